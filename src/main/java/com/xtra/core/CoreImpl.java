@@ -27,6 +27,8 @@ package com.xtra.core;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
 
 import org.slf4j.Logger;
@@ -58,17 +60,16 @@ import com.xtra.core.entity.EntityHandlerImpl;
 import com.xtra.core.event.XtraCoreCommandHandlerInitializedEventImpl;
 import com.xtra.core.event.XtraCoreConfigHandlerInitializedEventImpl;
 import com.xtra.core.event.XtraCoreInitializedEventImpl;
-import com.xtra.core.event.XtraCoreListenerHandlerInitializedEventImpl;
-import com.xtra.core.event.XtraCorePluginInitializedEventImpl;
 import com.xtra.core.internal.Internals;
-import com.xtra.core.listener.ListenerHandlerImpl;
 import com.xtra.core.logger.LoggerHandlerImpl;
+import com.xtra.core.plugin.PluginBootstrap;
 import com.xtra.core.plugin.XtraCorePluginContainerImpl;
 import com.xtra.core.plugin.XtraCorePluginHandlerImpl;
 import com.xtra.core.registry.CommandRegistryImpl;
 import com.xtra.core.registry.ConfigRegistryImpl;
 import com.xtra.core.text.HelpPaginationHandlerImpl;
 import com.xtra.core.util.ReflectionScanner;
+import com.xtra.core.util.timing.StartupTimings;
 import com.xtra.core.world.direction.DirectionHandlerImpl;
 
 public class CoreImpl implements ICore {
@@ -83,6 +84,7 @@ public class CoreImpl implements ICore {
     private ConfigRegistryImpl configRegistry = new ConfigRegistryImpl();
     private DirectionHandlerImpl directionHandler = new DirectionHandlerImpl();
     private LoggerHandlerImpl loggerHandler = new LoggerHandlerImpl();
+    private StartupTimings startupTimings = new StartupTimings();
 
     public CoreImpl(XtraCore core) {
         // Initialize XtraCore stuff
@@ -106,6 +108,7 @@ public class CoreImpl implements ICore {
         Sponge.getEventManager().post(new XtraCoreInitializedEventImpl(containerImpl));
 
         // Initialize XtraCore plugins
+        Map<XtraCorePluginContainerImpl, XtraCorePlugin> plugins = new LinkedHashMap<>();
         for (PluginContainer container : Sponge.getPluginManager().getPlugins()) {
             if (container.getInstance().isPresent()) {
                 Object instance = container.getInstance().get();
@@ -118,32 +121,12 @@ public class CoreImpl implements ICore {
                     Logger logger = this.loggerHandler.create(pluginContainerImpl);
                     logger.info(Internals.LOG_HEADER);
                     logger.info("Initializing with XtraCore version " + Internals.VERSION + "!");
-
-                    Internals.globalLogger.info(Internals.LOG_HEADER);
-                    Internals.globalLogger.info("Initializing plugin class " + instance.getClass().getName());
-
-                    pluginContainerImpl.scanner = ReflectionScanner.create(pluginContainerImpl);
-                    Sponge.getEventManager().post(new XtraCorePluginInitializedEventImpl(pluginContainerImpl));
-
-                    // Now initialize other XtraCore specific handlers, if they
-                    // have not been disabled.
-                    if (!annotation.disableConfigHandler()) {
-                        ConfigHandler handler = ConfigHandlerImpl.create(pluginContainerImpl);
-                        Sponge.getEventManager().post(new XtraCoreConfigHandlerInitializedEventImpl(pluginContainerImpl, handler));
-                    }
-
-                    if (!annotation.disableCommandHandler()) {
-                        CommandHandler handler = CommandHandlerImpl.create(pluginContainerImpl);
-                        Sponge.getEventManager().post(new XtraCoreCommandHandlerInitializedEventImpl(pluginContainerImpl, handler));
-                    }
-
-                    if (!annotation.disableListenerHandler()) {
-                        ListenerHandlerImpl handler = new ListenerHandlerImpl(pluginContainerImpl);
-                        Sponge.getEventManager().post(new XtraCoreListenerHandlerInitializedEventImpl(pluginContainerImpl, handler));
-                    }
+                    plugins.put(pluginContainerImpl, annotation);
                 }
             }
         }
+
+        new PluginBootstrap(plugins).run();
     }
 
     @Override
@@ -238,6 +221,10 @@ public class CoreImpl implements ICore {
         return this.loggerHandler;
     }
 
+    public StartupTimings getStartupTimings() {
+        return this.startupTimings;
+    }
+
     @Override
     public String getVersion() {
         return Internals.VERSION;
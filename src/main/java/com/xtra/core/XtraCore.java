@@ -25,30 +25,51 @@
 
 package com.xtra.core;
 
+import java.io.IOException;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
 import org.apache.commons.lang3.reflect.FieldUtils;
 import org.spongepowered.api.event.Listener;
 import org.spongepowered.api.event.Order;
+import org.spongepowered.api.event.command.SendCommandEvent;
 import org.spongepowered.api.event.game.GameReloadEvent;
 import org.spongepowered.api.event.game.state.GameConstructionEvent;
 import org.spongepowered.api.event.game.state.GameInitializationEvent;
+import org.spongepowered.api.event.game.state.GamePostInitializationEvent;
+import org.spongepowered.api.event.game.state.GameStoppingServerEvent;
+import org.spongepowered.api.event.network.ClientConnectionEvent;
 import org.spongepowered.api.plugin.Plugin;
 
+import com.google.common.collect.ImmutableSet;
 import com.xtra.api.Core;
 import com.xtra.api.command.base.CommandBase;
 import com.xtra.api.command.base.CommandBaseLite;
 import com.xtra.api.config.Config;
 import com.xtra.api.config.annotation.DoNotReload;
 import com.xtra.api.config.base.ConfigBase;
+import com.xtra.api.plugin.XtraCorePluginContainer;
+import com.xtra.api.text.HelpPaginationHandler;
 import com.xtra.api.text.HelpPaginationHandler.ChildBehavior;
+import com.xtra.core.command.async.AsyncCommandExecutor;
+import com.xtra.core.command.async.MainThreadQueue;
 import com.xtra.core.command.base.CommandBaseImpl;
 import com.xtra.core.command.base.CommandBaseLiteImpl;
 import com.xtra.core.config.base.ConfigBaseImpl;
 import com.xtra.core.internal.Internals;
 import com.xtra.core.internal.config.ConfigChecker;
+import com.xtra.core.plugin.XtraCorePluginContainerImpl;
+import com.xtra.core.text.HelpPaginationHandlerImpl;
 
 @Plugin(name = "XtraCore", id = "xtracore", version = Internals.VERSION, authors = {"12AwsomeMan34"}, description = Internals.DESCRIPTION)
 public class XtraCore {
 
+    // The commands of the common permission plugins, which may change the
+    // permissions of any subject.
+    private static final Set<String> PERMISSION_COMMANDS = ImmutableSet.of("lp", "luckperms", "perm", "perms", "permissions", "pex",
+            "promote", "demote");
+
     // Provide initial services to Core.
     @Listener(order = Order.FIRST)
     public void onPreInit(GameConstructionEvent event) {
@@ -58,6 +79,47 @@ public class XtraCore {
     @Listener
     public void onInit(GameInitializationEvent event) {
         CoreImpl.instance.createHelpPaginationBuilder(this.getClass()).childBehavior(ChildBehavior.IGNORE_PARENT).build();
+        MainThreadQueue.start(this);
+    }
+
+    // Every plugin has finished initializing by now, so write the timings.
+    @Listener
+    public void onPostInit(GamePostInitializationEvent event) {
+        try {
+            CoreImpl.instance.getStartupTimings().write(Internals.LOG_DIRECTORY.resolve("timings.csv"));
+        } catch (IOException e) {
+            Internals.globalLogger.error("An error has occurred while attempting to write the startup timings!", e);
+        }
+    }
+
+    @Listener
+    public void onServerStopping(GameStoppingServerEvent event) {
+        for (XtraCorePluginContainer container : CoreImpl.instance.getPluginHandler().getContainers()) {
+            ((XtraCorePluginContainerImpl) container).getAsyncExecutorIfCreated().ifPresent(AsyncCommandExecutor::shutdown);
+        }
+    }
+
+    @Listener
+    public void onJoin(ClientConnectionEvent.Join event) {
+        this.invalidateHelpGroups(event.getTargetEntity().getIdentifier());
+    }
+
+    // Async commands executed by a player are pointless once they have left.
+    @Listener
+    public void onDisconnect(ClientConnectionEvent.Disconnect event) {
+        for (XtraCorePluginContainer container : CoreImpl.instance.getPluginHandler().getContainers()) {
+            ((XtraCorePluginContainerImpl) container).getAsyncExecutorIfCreated()
+                    .ifPresent(executor -> executor.cancel(event.getTargetEntity().getUniqueId()));
+        }
+        this.invalidateHelpGroups(event.getTargetEntity().getIdentifier());
+    }
+
+    // The help lists filtered by permission must not show stale permissions.
+    @Listener(order = Order.POST)
+    public void onCommand(SendCommandEvent event) {
+        if (PERMISSION_COMMANDS.contains(event.getCommand().toLowerCase())) {
+            this.invalidateHelpGroups(null);
+        }
     }
 
     // For automatic configuration reloading.
@@ -72,6 +134,19 @@ public class XtraCore {
         }
     }
 
+    private void invalidateHelpGroups(@Nullable String identifier) {
+        for (XtraCorePluginContainer container : CoreImpl.instance.getPluginHandler().getContainers()) {
+            HelpPaginationHandler handler = container.getHelpPaginationHandler().orElse(null);
+            if (handler instanceof HelpPaginationHandlerImpl) {
+                if (identifier != null) {
+                    ((HelpPaginationHandlerImpl) handler).invalidateGroup(identifier);
+                } else {
+                    ((HelpPaginationHandlerImpl) handler).invalidateGroups();
+                }
+            }
+        }
+    }
+
     private void provideImplementations() {
         try {
             FieldUtils.writeStaticField(CommandBase.class, "BASE", new CommandBaseImpl(), true);
@@ -27,10 +27,18 @@ package com.xtra.core.command;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.spongepowered.api.Sponge;
+import org.spongepowered.api.command.CommandCallable;
+import org.spongepowered.api.command.CommandMapping;
 import org.spongepowered.api.command.spec.CommandSpec;
 import org.spongepowered.api.text.Text;
 
@@ -40,17 +48,26 @@ import com.xtra.api.command.annotation.RegisterCommand;
 import com.xtra.api.command.runnable.CommandRunnableHandler;
 import com.xtra.api.command.state.CommandStateHandler;
 import com.xtra.api.plugin.XtraCorePluginContainer;
+import com.xtra.api.text.HelpPaginationHandler;
 import com.xtra.api.util.command.EmptyCommand;
+import com.xtra.api.util.exceptions.XtraCoreException;
 import com.xtra.core.CoreImpl;
+import com.xtra.core.XtraCore;
+import com.xtra.core.command.annotation.CacheOutput;
+import com.xtra.core.command.cache.OutputCache;
 import com.xtra.core.command.runnable.CommandRunnableHandlerImpl;
 import com.xtra.core.command.state.CommandStateHandlerImpl;
 import com.xtra.core.internal.Internals;
 import com.xtra.core.internal.config.ConfigChecker;
 import com.xtra.core.plugin.XtraCorePluginContainerImpl;
 import com.xtra.core.registry.CommandRegistryImpl;
-import com.xtra.core.util.CommandGetter;
+import com.xtra.core.text.HelpPaginationHandlerImpl;
+import com.xtra.core.util.CommandAliasIndex;
 import com.xtra.core.util.CommandHelper;
+import com.xtra.core.util.CommandTree;
 import com.xtra.core.util.store.CommandStore;
+import com.xtra.core.util.timing.StartupTimings;
+import com.xtra.core.util.timing.StartupTimings.Timing;
 
 /**
  * A simple utility class for automatically retrieving, building and registering
@@ -59,10 +76,16 @@ import com.xtra.core.util.store.CommandStore;
 public class CommandHandlerImpl implements CommandHandler {
 
     private XtraCorePluginContainerImpl container;
-    private Set<Command> commands;
+    private Set<Command> commands = ConcurrentHashMap.newKeySet();
+    // Changed in place, and lookups from async commands never lock
+    private CommandAliasIndex aliasIndex = new CommandAliasIndex();
+    private CommandTree tree;
+    // The Sponge mappings of the root commands, to unregister them again
+    private Map<Class<? extends Command>, CommandMapping> mappings = new ConcurrentHashMap<>();
     private CommandHelper helper;
     private CommandRunnableHandler runnableHandler;
     private CommandStateHandler stateHandler;
+    private boolean lazy;
 
     private CommandHandlerImpl() {
     }
@@ -76,28 +99,50 @@ public class CommandHandlerImpl implements CommandHandler {
         Internals.globalLogger.info(Internals.LOG_HEADER);
         Internals.globalLogger.info("Initializing command handler for " + entry.getPluginContainer().getName());
 
-        this.commands = this.container.scanner.getCommands();
+        this.commands.addAll(this.container.scanner.getCommands());
+        for (Command command : this.commands) {
+            this.aliasIndex.add(command, this.container);
+        }
+        this.tree = CommandTree.build(this.commands);
         this.container.setCommandHandler(this);
 
         ConfigChecker.commandConfig();
 
         this.helper = new CommandHelper(this.container);
+        // The XtraCore container is not in the plugins config
+        this.lazy = !(entry.getPlugin() instanceof XtraCore) && ConfigChecker.lazyCommands(entry);
         this.container.getLogger().info(Internals.LOG_HEADER);
         this.container.getLogger().info("Initializing the command handler!");
-        this.container.getLogger().info("Initializing the command specs for the commands...");
+        if (this.lazy) {
+            this.container.getLogger().info("Lazy commands are enabled, the command specs will be built on first use.");
+        } else {
+            this.container.getLogger().info("Initializing the command specs for the commands...");
+        }
 
-        for (Command command : this.commands) {
-            this.initializeCommandSpec(command);
+        StartupTimings timings = CoreImpl.instance.getStartupTimings();
+        try (Timing timing = timings.start(entry, "command spec building")) {
+            for (Command command : this.commands) {
+                this.initializeCommandSpec(command);
+            }
+        }
+        if (!this.lazy) {
+            this.container.getLogger().info(Internals.LOG_HEADER);
+            this.container.getLogger().info("Adding any necessary child commands to the command specs!");
+            try (Timing timing = timings.start(entry, "child command linking")) {
+                this.addChildCommands();
+            }
         }
-        this.container.getLogger().info(Internals.LOG_HEADER);
-        this.container.getLogger().info("Adding any necessary child commands to the command specs!");
-        this.addChildCommands();
         this.container.getLogger().info(Internals.LOG_HEADER);
         this.container.getLogger().info("Building and registering the commands!");
-        for (CommandStore command : this.container.commandStores) {
-            this.buildAndRegisterCommand(command.commandSpecBuilder(), command.command());
-            CommandRegistryImpl commandImpl = (CommandRegistryImpl) CoreImpl.instance.getCommandRegistry();
-            commandImpl.add(command.command(), this.container);
+        try (Timing timing = timings.start(entry, "command registration")) {
+            Map<Command, XtraCorePluginContainerImpl> registered = new LinkedHashMap<>();
+            for (CommandStore command : this.container.commandStores) {
+                this.buildAndRegisterCommand(command);
+                registered.put(command.command(), this.container);
+            }
+            // Published to the global registry at once, rather than copying
+            // it for every command
+            ((CommandRegistryImpl) CoreImpl.instance.getCommandRegistry()).addAll(registered);
         }
 
         this.runnableHandler = CommandRunnableHandlerImpl.create(entry);
@@ -106,6 +151,20 @@ public class CommandHandlerImpl implements CommandHandler {
     }
 
     private void initializeCommandSpec(Command command) {
+        // With lazy commands, the spec builder is only created on first use
+        CommandSpec.Builder specBuilder = this.lazy ? null : this.createCommandSpecBuilder(command);
+
+        Command parentCommand = this.helper.getParentCommand(command);
+        if (parentCommand != null) {
+            this.container.getLogger().info("Adding the command and its parent command to the command stores.");
+            this.container.addCommandStore(new CommandStore(command, specBuilder, parentCommand));
+        } else {
+            this.container.getLogger().info("Parent command not found. Presuming command does not have one.");
+            this.container.addCommandStore(new CommandStore(command, specBuilder, null));
+        }
+    }
+
+    private CommandSpec.Builder createCommandSpecBuilder(Command command) {
         // Create the initial CommandSpec builder
         CommandSpec.Builder specBuilder = CommandSpec.builder().executor(command);
 
@@ -127,45 +186,213 @@ public class CommandHandlerImpl implements CommandHandler {
                 this.container.getLogger().info("Command has " + command.args().length + " argument(s).");
             }
         }
+        return specBuilder;
+    }
 
-        Command parentCommand = this.helper.getParentCommand(command);
-        if (parentCommand != null) {
-            this.container.getLogger().info("Adding the command and its parent command to the command stores.");
-            this.container.commandStores.add(new CommandStore(command, specBuilder, parentCommand));
-        } else {
-            this.container.getLogger().info("Parent command not found. Presuming command does not have one.");
-            this.container.commandStores.add(new CommandStore(command, specBuilder, null));
+    /**
+     * Builds the command spec of the specified command, including all of its
+     * child commands. Used for lazy commands, where nothing has been built
+     * before the command is first used.
+     * 
+     * @param store The command store of the command
+     * @return The built command spec
+     */
+    public CommandSpec buildCommandSpec(CommandStore store) {
+        CommandSpec.Builder specBuilder = this.createCommandSpecBuilder(store.command());
+        store.setCommandSpecBuilder(specBuilder);
+        CommandTree.Node node = this.tree.get(store.command().getClass());
+        if (node != null) {
+            for (CommandTree.Node child : node.getChildren()) {
+                CommandStore childStore = this.container.getCommandStore(child.getCommand().getClass());
+                if (childStore != null) {
+                    specBuilder.child(this.buildCommandSpec(childStore), child.getCommand().aliases());
+                }
+            }
         }
+        return specBuilder.build();
     }
 
     private void addChildCommands() {
-        // Go through the commands to find any child commands
-        for (CommandStore commandStore : this.container.commandStores) {
-            if (commandStore.childOf() != null) {
-                if (!(commandStore.childOf() instanceof EmptyCommand)) {
-                    // Iterate through to find the parent
-                    for (CommandStore commandStore2 : this.container.commandStores) {
-                        if (commandStore2.command().equals(commandStore.childOf())) {
-                            this.container.getLogger().info("Adding '" + commandStore.command().aliases()[0] + "' as a child command of '"
-                                    + commandStore2.command().aliases()[0] + "'");
-                            commandStore2.commandSpecBuilder().child(commandStore.commandSpecBuilder().build(), commandStore.command().aliases());
-                        }
-                    }
-                }
+        // The deepest commands first, so that the specs of child commands
+        // include their own children when they are built
+        List<List<CommandTree.Node>> levels = this.tree.getLevels();
+        for (int depth = levels.size() - 1; depth > 0; depth--) {
+            for (CommandTree.Node node : levels.get(depth)) {
+                CommandStore store = this.container.getCommandStore(node.getCommand().getClass());
+                CommandStore parentStore = this.container.getCommandStore(node.getParent().getCommand().getClass());
+                this.container.getLogger().info("Adding '" + node.getCommand().aliases()[0] + "' as a child command of '"
+                        + node.getParent().getCommand().aliases()[0] + "'");
+                parentStore.commandSpecBuilder().child(store.commandSpecBuilder().build(), node.getCommand().aliases());
             }
         }
     }
 
-    private void buildAndRegisterCommand(CommandSpec.Builder commandSpec, Command command) {
+    /**
+     * Gets the tree of the commands of this plugin.
+     * 
+     * @return The command tree
+     */
+    public CommandTree getCommandTree() {
+        return this.tree;
+    }
+
+    private void buildAndRegisterCommand(CommandStore store) {
+        Command command = store.command();
         if (command.getClass().getAnnotation(RegisterCommand.class).childOf().equals(EmptyCommand.class)) {
-            this.container.getLogger().info("Building and registering the command: '" + command.aliases()[0] + "'");
-            Sponge.getCommandManager().register(this.container.getPlugin(), commandSpec.build(), command.aliases());
+            CommandCallable callable;
+            if (this.lazy) {
+                this.container.getLogger().info("Registering the lazy command: '" + command.aliases()[0] + "'");
+                callable = new LazyCommandCallable(this, store);
+            } else {
+                this.container.getLogger().info("Building and registering the command: '" + command.aliases()[0] + "'");
+                callable = store.commandSpecBuilder().build();
+            }
+            Optional<CommandMapping> mapping = Sponge.getCommandManager().register(this.container.getPlugin(), callable, command.aliases());
+            if (mapping.isPresent()) {
+                this.mappings.put(command.getClass(), mapping.get());
+            }
+        }
+    }
+
+    /**
+     * Registers a command after the command handler has been initialized. A
+     * child command is added to the command tree of its parent, which must
+     * already be registered, and only that tree is registered with Sponge
+     * again. Must be called from the main thread.
+     * 
+     * @param command The command
+     * @return If the command was registered
+     */
+    public synchronized boolean register(Command command) {
+        checkNotNull(command, "Command cannot be null!");
+        RegisterCommand annotation = command.getClass().getAnnotation(RegisterCommand.class);
+        if (annotation == null) {
+            this.container.getLogger().error("The command " + command.getClass().getName() + " is not annotated with @RegisterCommand!",
+                    new XtraCoreException());
+            return false;
+        }
+        if (this.container.getCommandStore(command.getClass()) != null) {
+            this.container.getLogger().error("The command '" + command.aliases()[0] + "' is already registered!", new XtraCoreException());
+            return false;
+        }
+        boolean child = !annotation.childOf().equals(EmptyCommand.class);
+        if (child && this.container.getCommandStore(annotation.childOf()) == null) {
+            this.container.getLogger().error("The parent command of '" + command.aliases()[0] + "' is not registered!", new XtraCoreException());
+            return false;
+        }
+
+        this.container.getLogger().info("Registering the command '" + command.aliases()[0] + "' at runtime.");
+        this.commands.add(command);
+        this.tree.add(command);
+        this.aliasIndex.add(command, this.container);
+        this.initializeCommandSpec(command);
+        CommandStore store = this.container.getCommandStore(command.getClass());
+        if (child) {
+            this.reregisterCommand(this.getRootStore(store));
+        } else {
+            this.buildAndRegisterCommand(store);
+        }
+        ((CommandRegistryImpl) CoreImpl.instance.getCommandRegistry()).add(command, this.container);
+        this.commandsChanged(Collections.<Class<? extends Command>>singletonList(command.getClass()));
+        return true;
+    }
+
+    /**
+     * Unregisters a command, together with all of its child commands. If the
+     * command is a child command, the command tree of its parent is registered
+     * with Sponge again without it. Runnables added to the command are kept,
+     * in case it is registered again. Must be called from the main thread.
+     * 
+     * @param clazz The command class
+     * @return If the command was registered
+     */
+    public synchronized boolean unregister(Class<? extends Command> clazz) {
+        checkNotNull(clazz, "Command class cannot be null!");
+        CommandStore store = this.container.getCommandStore(clazz);
+        if (store == null) {
+            return false;
+        }
+
+        this.container.getLogger().info("Unregistering the command '" + store.command().aliases()[0] + "' at runtime.");
+        List<CommandStore> removed = new ArrayList<>();
+        List<CommandTree.Node> nodes = this.tree.remove(clazz);
+        if (nodes.isEmpty()) {
+            removed.add(store);
+        }
+        for (CommandTree.Node node : nodes) {
+            removed.add(this.container.getCommandStore(node.getCommand().getClass()));
+        }
+        List<Command> commands = new ArrayList<>();
+        for (CommandStore commandStore : removed) {
+            Command command = commandStore.command();
+            commands.add(command);
+            this.commands.remove(command);
+            this.aliasIndex.remove(command);
+            this.container.removeCommandStore(commandStore);
+            OutputCache.invalidate(command.getClass());
+            CommandMapping mapping = this.mappings.remove(command.getClass());
+            if (mapping != null) {
+                Sponge.getCommandManager().removeMapping(mapping);
+            }
+        }
+        // Published at once, so readers never see half of the subtree
+        ((CommandRegistryImpl) CoreImpl.instance.getCommandRegistry()).removeAll(commands);
+        if (store.childOf() != null) {
+            CommandStore parent = this.container.getCommandStore(store.childOf().getClass());
+            if (parent != null) {
+                this.reregisterCommand(this.getRootStore(parent));
+            }
+        }
+        List<Class<? extends Command>> classes = new ArrayList<>();
+        for (CommandStore commandStore : removed) {
+            classes.add(commandStore.command().getClass());
+        }
+        this.commandsChanged(classes);
+        return true;
+    }
+
+    private void reregisterCommand(CommandStore root) {
+        CommandMapping mapping = this.mappings.remove(root.command().getClass());
+        if (mapping != null) {
+            Sponge.getCommandManager().removeMapping(mapping);
+        }
+        if (!this.lazy) {
+            // Children cannot be removed from a spec builder, so the specs of
+            // this tree are built from scratch
+            this.buildCommandSpec(root);
+        }
+        this.buildAndRegisterCommand(root);
+    }
+
+    private CommandStore getRootStore(CommandStore store) {
+        CommandTree.Node node = this.tree.get(store.command().getClass());
+        if (node == null) {
+            return store;
+        }
+        while (node.getParent() != null) {
+            node = node.getParent();
+        }
+        return this.container.getCommandStore(node.getCommand().getClass());
+    }
+
+    private void commandsChanged(List<Class<? extends Command>> classes) {
+        OutputCache.invalidateCommandDependent();
+        Optional<HelpPaginationHandler> helpHandler = this.container.getHelpPaginationHandler();
+        if (helpHandler.isPresent()) {
+            for (Class<? extends Command> clazz : classes) {
+                ((HelpPaginationHandlerImpl) helpHandler.get()).update(clazz);
+            }
         }
     }
 
     @Override
     public Optional<Command> getCommand(Class<? extends Command> clazz) {
         checkNotNull(clazz, "Command class cannot be null!");
+        CommandStore store = this.container.getCommandStore(clazz);
+        if (store != null) {
+            return Optional.of(store.command());
+        }
+        // Not the class of a command, but possibly a supertype of one
         for (Command command : this.commands) {
             if (clazz.isInstance(command)) {
                 return Optional.of(command);
@@ -176,7 +403,8 @@ public class CommandHandlerImpl implements CommandHandler {
 
     @Override
     public Optional<Command> getCommand(String primaryAlias) {
-        return CommandGetter.getCommand(primaryAlias, this.commands, container);
+        Map.Entry<Command, XtraCorePluginContainer> entry = this.aliasIndex.get(primaryAlias);
+        return entry != null ? Optional.of(entry.getKey()) : Optional.empty();
     }
 
     @Override
@@ -184,6 +412,26 @@ public class CommandHandlerImpl implements CommandHandler {
         return this.commands;
     }
 
+    /**
+     * Discards the cached output of the specified command, for commands
+     * annotated with {@link CacheOutput}.
+     * 
+     * @param clazz The command class
+     */
+    public void invalidateOutput(Class<? extends Command> clazz) {
+        checkNotNull(clazz, "Command class cannot be null!");
+        OutputCache.invalidate(clazz);
+    }
+
+    /**
+     * Discards the cached output of all commands of this plugin.
+     */
+    public void invalidateOutput() {
+        for (Command command : this.commands) {
+            OutputCache.invalidate(command.getClass());
+        }
+    }
+
     @Override
     public CommandRunnableHandler getCommandRunnableHandler() {
         return this.runnableHandler;
@@ -0,0 +1,92 @@
+/**
+ * This file is part of XtraCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016 - 2016 XtraStudio <https://github.com/XtraStudio>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.xtra.core.command;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.spongepowered.api.command.CommandCallable;
+import org.spongepowered.api.command.CommandException;
+import org.spongepowered.api.command.CommandResult;
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.command.spec.CommandSpec;
+import org.spongepowered.api.text.Text;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.xtra.api.command.Command;
+import com.xtra.core.util.store.CommandStore;
+
+/**
+ * A command registered with Sponge before its command spec has been built. The
+ * spec, including the specs of all child commands, is built the first time the
+ * command is executed or completed. Permission checks and the short
+ * description are answered from the command itself, so listing commands does
+ * not build anything.
+ */
+public class LazyCommandCallable implements CommandCallable {
+
+    private Command command;
+    private Supplier<CommandSpec> spec;
+
+    public LazyCommandCallable(CommandHandlerImpl handler, CommandStore store) {
+        this.command = store.command();
+        this.spec = Suppliers.memoize(() -> handler.buildCommandSpec(store));
+    }
+
+    @Override
+    public CommandResult process(CommandSource source, String arguments) throws CommandException {
+        return this.spec.get().process(source, arguments);
+    }
+
+    @Override
+    public List<String> getSuggestions(CommandSource source, String arguments) throws CommandException {
+        return this.spec.get().getSuggestions(source, arguments);
+    }
+
+    @Override
+    public boolean testPermission(CommandSource source) {
+        return this.command.permission() == null || source.hasPermission(this.command.permission());
+    }
+
+    @Override
+    public Optional<Text> getShortDescription(CommandSource source) {
+        if (this.command.description() == null) {
+            return Optional.empty();
+        }
+        return Optional.of(Text.of(this.command.description()));
+    }
+
+    @Override
+    public Optional<Text> getHelp(CommandSource source) {
+        return this.spec.get().getHelp(source);
+    }
+
+    @Override
+    public Text getUsage(CommandSource source) {
+        return this.spec.get().getUsage(source);
+    }
+}
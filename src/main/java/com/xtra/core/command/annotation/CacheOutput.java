@@ -0,0 +1,70 @@
+/**
+ * This file is part of XtraCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016 - 2016 XtraStudio <https://github.com/XtraStudio>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.xtra.core.command.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a command whose output only depends on its arguments and, optionally,
+ * on some permissions of the source. Output rendered through
+ * {@link com.xtra.core.command.cache.OutputCache} is then reused between
+ * executions instead of being rendered again.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CacheOutput {
+
+    /**
+     * The names of the arguments the output depends on. Their values are
+     * compared case insensitively.
+     */
+    String[] arguments() default {};
+
+    /**
+     * The permissions the output depends on. Sources holding different sets
+     * of these permissions never share output.
+     */
+    String[] permissions() default {};
+
+    /**
+     * How long rendered output is kept, in seconds.
+     */
+    long expireAfterSeconds() default 60;
+
+    /**
+     * How many different outputs are kept at most.
+     */
+    long maximumSize() default 256;
+
+    /**
+     * Whether the output describes other commands, in which case it is
+     * discarded whenever commands are registered or unregistered at runtime.
+     */
+    boolean dependsOnCommands() default false;
+}
@@ -0,0 +1,387 @@
+/**
+ * This file is part of XtraCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016 - 2016 XtraStudio <https://github.com/XtraStudio>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.xtra.core.command.async;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nullable;
+
+import org.spongepowered.api.command.CommandResult;
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.entity.living.player.Player;
+
+import com.xtra.api.command.Command;
+import com.xtra.api.plugin.XtraCorePluginContainer;
+import com.xtra.core.command.base.CommandInvocation;
+
+/**
+ * Runs the async commands of a single plugin. Unlike the shared Sponge async
+ * scheduler, the executor is bounded: once every thread is busy and the queue
+ * is full, new commands are either rejected or run by the calling thread,
+ * depending on the {@link RejectionPolicy}.
+ * 
+ * <p>Every command is represented by a future, which fails with a
+ * {@link TimeoutException} once the command has run for longer than its
+ * timeout, and which is cancelled when the player that executed it
+ * disconnects. In both cases the command thread is interrupted, so commands
+ * should stop once they notice the interruption. Commands run by the calling
+ * thread are never interrupted, as that is usually the main thread.</p>
+ */
+public class AsyncCommandExecutor {
+
+    // Shared by all plugins, as it only ever completes futures
+    private static final ScheduledThreadPoolExecutor TIMEOUTS = createTimeoutScheduler();
+
+    private XtraCorePluginContainer container;
+    private RejectionPolicy policy;
+    private long defaultTimeout;
+    private Map<String, Long> timeouts;
+    private Map<UUID, Set<AsyncCommandTask>> tasksBySource = new ConcurrentHashMap<>();
+    // Either a thread pool, or a new virtual thread for every command
+    @Nullable private ThreadPoolExecutor pool;
+    @Nullable private ThreadFactory virtualThreads;
+    @Nullable private Semaphore virtualPermits;
+
+    private AtomicInteger active = new AtomicInteger();
+    private LongAdder submitted = new LongAdder();
+    private LongAdder completed = new LongAdder();
+    private LongAdder rejected = new LongAdder();
+
+    private AsyncCommandExecutor(XtraCorePluginContainer container, RejectionPolicy policy, long defaultTimeout, Map<String, Long> timeouts) {
+        this.container = container;
+        this.policy = policy;
+        this.defaultTimeout = defaultTimeout;
+        this.timeouts = timeouts;
+    }
+
+    /**
+     * Creates a new executor.
+     * 
+     * @param container The plugin the executor belongs to
+     * @param poolSize The amount of threads
+     * @param queueCapacity The amount of commands that may wait for a thread
+     * @param policy What to do with commands once the queue is full
+     * @param virtualThreads Whether every command should run on a new virtual
+     *        thread, if they are supported
+     * @param defaultTimeout The timeout of commands in milliseconds, or 0 for
+     *        none
+     * @param timeouts The timeouts of specific commands in milliseconds, by
+     *        primary alias
+     * @return The new executor
+     */
+    public static AsyncCommandExecutor create(XtraCorePluginContainer container, int poolSize, int queueCapacity, RejectionPolicy policy,
+            boolean virtualThreads, long defaultTimeout, Map<String, Long> timeouts) {
+        AsyncCommandExecutor executor = new AsyncCommandExecutor(container, policy, defaultTimeout, timeouts);
+        String name = container.getPluginContainer().getId() + "-async-command-";
+
+        if (virtualThreads) {
+            executor.virtualThreads = createVirtualThreadFactory(name);
+            if (executor.virtualThreads != null) {
+                // Virtual threads are cheap, but the amount of commands in
+                // flight is still bounded
+                executor.virtualPermits = new Semaphore(poolSize + queueCapacity);
+                container.getLogger().info("Running async commands on virtual threads.");
+                return executor;
+            }
+            container.getLogger().warn("Virtual threads are not supported by this Java version! Using a thread pool instead.");
+        }
+
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, name + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        RejectedExecutionHandler handler = (runnable, pool) -> executor.reject(runnable);
+        executor.pool = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity), threadFactory,
+                handler);
+        executor.pool.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Runs the specified command asynchronously. Note that the returned
+     * future completes on the command thread.
+     *
+     * @param invocation The command invocation
+     * @param command Executes the command
+     * @return The future result of the command
+     * @throws RejectedExecutionException If the executor is saturated and the
+     *         rejection policy is {@link RejectionPolicy#REJECT}
+     */
+    public CompletableFuture<CommandResult> submit(CommandInvocation invocation, Callable<CommandResult> command) {
+        AsyncCommandTask task = new AsyncCommandTask(command, invocation.getCommand().aliases()[0], this.getTimeout(invocation.getCommand()));
+        CommandSource source = invocation.getSource();
+        if (source instanceof Player) {
+            // Tracked so that the command can be cancelled once the player
+            // disconnects
+            UUID uniqueId = ((Player) source).getUniqueId();
+            this.tasksBySource.compute(uniqueId, (key, tasks) -> {
+                // Added while the set is held, so that a completing task
+                // cannot remove the set in between
+                if (tasks == null) {
+                    tasks = ConcurrentHashMap.newKeySet();
+                }
+                tasks.add(task);
+                return tasks;
+            });
+            task.whenComplete((result, error) -> this.tasksBySource.computeIfPresent(uniqueId, (key, tasks) -> {
+                tasks.remove(task);
+                return tasks.isEmpty() ? null : tasks;
+            }));
+        }
+
+        try {
+            this.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.cancel(false);
+            throw e;
+        }
+        return task;
+    }
+
+    /**
+     * Cancels every command that was executed by the specified player and has
+     * not completed yet.
+     * 
+     * @param uniqueId The unique id of the player
+     */
+    public void cancel(UUID uniqueId) {
+        Set<AsyncCommandTask> tasks = this.tasksBySource.remove(uniqueId);
+        if (tasks != null) {
+            for (AsyncCommandTask task : tasks) {
+                task.cancel(true);
+            }
+        }
+    }
+
+    private long getTimeout(Command command) {
+        Long timeout = this.timeouts.get(command.aliases()[0]);
+        return timeout != null ? timeout : this.defaultTimeout;
+    }
+
+    private void execute(Runnable command) {
+        this.submitted.increment();
+        Runnable task = () -> {
+            this.active.incrementAndGet();
+            try {
+                command.run();
+            } finally {
+                this.active.decrementAndGet();
+                this.completed.increment();
+            }
+        };
+
+        if (this.pool != null) {
+            this.pool.execute(task);
+            return;
+        }
+        if (!this.virtualPermits.tryAcquire()) {
+            this.reject(task);
+            return;
+        }
+        this.virtualThreads.newThread(() -> {
+            try {
+                task.run();
+            } finally {
+                this.virtualPermits.release();
+            }
+        }).start();
+    }
+
+    private void reject(Runnable task) {
+        this.rejected.increment();
+        if (this.policy == RejectionPolicy.CALLER_RUNS) {
+            task.run();
+            return;
+        }
+        throw new RejectedExecutionException("The async command executor of " + this.container.getPluginContainer().getId() + " is full!");
+    }
+
+    /**
+     * Stops accepting new commands. Commands that are already running or
+     * queued will still complete.
+     */
+    public void shutdown() {
+        if (this.pool != null) {
+            this.pool.shutdown();
+        }
+    }
+
+    public int getQueueDepth() {
+        return this.pool != null ? this.pool.getQueue().size() : 0;
+    }
+
+    public int getActiveCount() {
+        return this.active.get();
+    }
+
+    public long getSubmittedCount() {
+        return this.submitted.sum();
+    }
+
+    public long getCompletedCount() {
+        return this.completed.sum();
+    }
+
+    public long getRejectedCount() {
+        return this.rejected.sum();
+    }
+
+    private static ScheduledThreadPoolExecutor createTimeoutScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "xtracore-async-command-timeouts");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Most commands complete well before their timeout
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    // Virtual threads were added in Java 21, so they can only be reached
+    // reflectively from here
+    @Nullable
+    private static ThreadFactory createVirtualThreadFactory(String name) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method nameMethod = builderClass.getMethod("name", String.class, long.class);
+            builder = nameMethod.invoke(builder, name, 1L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | SecurityException e) {
+            return null;
+        }
+    }
+
+    private static class AsyncCommandTask extends CompletableFuture<CommandResult> implements Runnable {
+
+        private Callable<CommandResult> command;
+        private String alias;
+        private long timeout;
+        private Thread caller;
+        // Null unless the command is running on a command thread
+        @Nullable private Thread runner;
+
+        AsyncCommandTask(Callable<CommandResult> command, String alias, long timeout) {
+            this.command = command;
+            this.alias = alias;
+            this.timeout = timeout;
+            this.caller = Thread.currentThread();
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (this.isDone()) {
+                    // Cancelled while waiting in the queue
+                    return;
+                }
+                // A rejected command may be run by the calling thread, which
+                // must not be interrupted
+                if (Thread.currentThread() != this.caller) {
+                    this.runner = Thread.currentThread();
+                }
+            }
+            // Time spent waiting in the queue doesn't count
+            ScheduledFuture<?> timeoutFuture = null;
+            if (this.timeout > 0) {
+                timeoutFuture = TIMEOUTS.schedule(() -> {
+                    this.timeout(new TimeoutException("The command " + this.alias + " timed out after " + this.timeout + "ms!"));
+                }, this.timeout, TimeUnit.MILLISECONDS);
+            }
+            try {
+                this.complete(this.command.call());
+            } catch (Exception e) {
+                this.completeExceptionally(e);
+            } finally {
+                if (timeoutFuture != null) {
+                    timeoutFuture.cancel(false);
+                }
+                synchronized (this) {
+                    if (this.runner != null) {
+                        this.runner = null;
+                        // Don't leak an interrupt into the next command on
+                        // this thread
+                        Thread.interrupted();
+                    }
+                }
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled && mayInterruptIfRunning) {
+                this.interrupt();
+            }
+            return cancelled;
+        }
+
+        void timeout(TimeoutException e) {
+            if (this.completeExceptionally(e)) {
+                this.interrupt();
+            }
+        }
+
+        private synchronized void interrupt() {
+            if (this.runner != null) {
+                this.runner.interrupt();
+            }
+        }
+    }
+
+    public enum RejectionPolicy {
+        /**
+         * Commands are rejected, and their source is told to try again later.
+         */
+        REJECT,
+        /**
+         * Commands are run by the thread that executed them, which is usually
+         * the main thread. They are never interrupted, so a timeout only
+         * completes their future.
+         */
+        CALLER_RUNS
+    }
+}
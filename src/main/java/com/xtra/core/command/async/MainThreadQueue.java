@@ -0,0 +1,73 @@
+/**
+ * This file is part of XtraCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016 - 2016 XtraStudio <https://github.com/XtraStudio>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.xtra.core.command.async;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.spongepowered.api.Sponge;
+
+import com.xtra.core.internal.Internals;
+
+/**
+ * Hands work from async threads back to the main thread. Instead of building
+ * and submitting a new Sponge task for every completed command, work is queued
+ * here and a single repeating task drains the queue every tick.
+ */
+public class MainThreadQueue {
+
+    private static final Queue<Runnable> QUEUE = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Starts draining the queue every tick.
+     *
+     * @param plugin The plugin to run the draining task under
+     */
+    public static void start(Object plugin) {
+        Sponge.getScheduler().createTaskBuilder().name("XtraCore main thread queue").intervalTicks(1).execute(MainThreadQueue::drain)
+                .submit(plugin);
+    }
+
+    /**
+     * Runs the specified runnable on the main thread, during the next tick.
+     *
+     * @param runnable The runnable
+     */
+    public static void execute(Runnable runnable) {
+        QUEUE.add(runnable);
+    }
+
+    private static void drain() {
+        Runnable runnable;
+        while ((runnable = QUEUE.poll()) != null) {
+            try {
+                runnable.run();
+            } catch (Exception e) {
+                Internals.globalLogger.error("An exception has occurred while running a task on the main thread!", e);
+            }
+        }
+    }
+}
@@ -25,218 +25,113 @@
 
 package com.xtra.core.command.base;
 
-import java.lang.annotation.Annotation;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
 
-import org.spongepowered.api.Sponge;
-import org.spongepowered.api.block.tileentity.CommandBlock;
 import org.spongepowered.api.command.CommandException;
 import org.spongepowered.api.command.CommandResult;
 import org.spongepowered.api.command.CommandSource;
 import org.spongepowered.api.command.args.CommandContext;
-import org.spongepowered.api.command.source.CommandBlockSource;
-import org.spongepowered.api.command.source.ConsoleSource;
-import org.spongepowered.api.command.source.ProxySource;
-import org.spongepowered.api.command.source.RconSource;
-import org.spongepowered.api.command.source.RemoteSource;
-import org.spongepowered.api.command.source.SignSource;
-import org.spongepowered.api.entity.living.player.Player;
-import org.spongepowered.api.entity.vehicle.minecart.CommandBlockMinecart;
-import org.spongepowered.api.scheduler.Task;
 import org.spongepowered.api.text.Text;
 import org.spongepowered.api.text.format.TextColors;
-import org.spongepowered.api.util.TextMessageException;
 
 import com.xtra.api.command.annotation.RegisterCommand;
-import com.xtra.api.command.annotation.RunAt;
 import com.xtra.api.command.base.CommandBase;
 import com.xtra.api.command.runnable.CommandPhase;
-import com.xtra.api.command.runnable.CommandRunnable;
 import com.xtra.api.command.runnable.CommandRunnableResult;
 import com.xtra.api.command.state.CommandState;
 import com.xtra.api.util.command.CommandBaseExecutor;
-import com.xtra.core.CoreImpl;
+import com.xtra.core.command.async.MainThreadQueue;
+import com.xtra.core.command.runnable.CommandRunnablePipeline;
+import com.xtra.core.command.stats.CommandStats.Phase;
 import com.xtra.core.plugin.XtraCorePluginContainerImpl;
-import com.xtra.core.util.map.MapSorter;
 import com.xtra.core.util.store.CommandStore;
 
 public class CommandBaseImpl implements CommandBaseExecutor {
 
-    private CommandBase<?> base;
-    private XtraCorePluginContainerImpl container;
-    private Map<CommandRunnable, RunAt> map;
-
     @SuppressWarnings({"rawtypes", "unchecked"})
     @Override
     public CommandResult execute(CommandBase commandBase, Class<?> targetSource, CommandSource source, CommandContext args)
             throws CommandException {
-        if (this.container == null) {
-            this.container = (XtraCorePluginContainerImpl) CoreImpl.instance.getCommandRegistry().getEntry(commandBase.getClass()).get().getValue();
-        }
-        this.base = commandBase;
-        // Start again with an empty map
-        this.map = new HashMap<>();
-        // If there is a command runnable set for this class, get them
-        if (this.container.commandRunnables.keySet().contains(commandBase.getClass())) {
-            Collection<CommandRunnable> runnables = this.container.commandRunnables.get(commandBase.getClass());
-            try {
-                for (CommandRunnable runnable : runnables) {
-                    // Put the command runnable as well as the RunAt annotation
-                    // into our mapping
-                    RunAt runAt = runnable.getClass().getMethod("run", CommandSource.class, CommandContext.class).getAnnotation(RunAt.class);
-                    if (runAt == null) {
-                        // If RunAt wasn't specified, use defaults
-                        runAt = new RunAt() {
-
-                            @Override
-                            public Class<? extends Annotation> annotationType() {
-                                return RunAt.class;
-                            }
-
-                            @Override
-                            public int priority() {
-                                return 1000;
-                            }
-
-                            @Override
-                            public CommandPhase phase() {
-                                return CommandPhase.START;
-                            }
-                        };
-                    }
-                    this.map.put(runnable, runAt);
-                }
-            } catch (NoSuchMethodException | SecurityException e) {
-                this.container.getLogger().error("An error has occurred while attempting to gather the RunAt's for the CommandRunnable's!", e);
-            }
-        }
-        if (!this.map.isEmpty()) {
-            // Sort the mapping by priority specified in RunAt
-            this.map = MapSorter.sortRunAtPriority(this.map);
+        CommandInvocation invocation = CommandInvocation.create(commandBase, source, args);
+        XtraCorePluginContainerImpl container = invocation.getContainer();
+        CommandRunnablePipeline pipeline = container.getRunnablePipeline(commandBase.getClass());
+        long time = System.nanoTime();
+
+        // Rate limits are enforced before anything else runs
+        Text limited = pipeline.checkRateLimits(source);
+        if (limited != null) {
+            source.sendMessage(limited);
+            return CommandResult.empty();
         }
 
         // Execute any runnables set for 'PRE'
-        Optional<CommandRunnableResult> checkRunnablesPre = this.checkPhase(CommandPhase.PRE, source, args);
-        if (checkRunnablesPre.isPresent()) {
-            return checkRunnablesPre.get().getResult();
+        CommandRunnableResult checkRunnablesPre = pipeline.run(CommandPhase.PRE, source, args);
+        time = invocation.record(Phase.PRE, time);
+        if (checkRunnablesPre != null) {
+            return checkRunnablesPre.getResult();
         }
 
         // If the CommandState is disabled, inform and return empty
-        if (!this.checkCommandState()) {
+        if (!this.checkCommandState(invocation)) {
             source.sendMessage(Text.of(TextColors.RED, "This command is currently disabled."));
             return CommandResult.empty();
         }
 
-        Optional<Text> isCorrectCommandSource = this.checkCommandSource(targetSource, source);
-        if (isCorrectCommandSource.isPresent()) {
-            source.sendMessage(isCorrectCommandSource.get());
+        Text rejection = CommandSourceValidator.get(targetSource).validate(source);
+        if (rejection != null) {
+            source.sendMessage(rejection);
             return CommandResult.empty();
         }
 
         // Execute any runnables set for 'START'
-        Optional<CommandRunnableResult> checkRunnablesStart = this.checkPhase(CommandPhase.START, source, args);
-        if (checkRunnablesStart.isPresent()) {
-            return checkRunnablesStart.get().getResult();
+        CommandRunnableResult checkRunnablesStart = pipeline.run(CommandPhase.START, source, args);
+        invocation.record(Phase.START, time);
+        if (checkRunnablesStart != null) {
+            return checkRunnablesStart.getResult();
         }
 
         // Check if our command is async. If so, then run it asynchronously
         if (commandBase.getClass().getAnnotation(RegisterCommand.class).async()) {
-            // Create a synchronous task to be executed after the asynchronous
-            // command has completed
-            Task.Builder postTask = Sponge.getScheduler().createTaskBuilder().execute(
-                    task -> {
-                        this.checkPhase(CommandPhase.POST, source, args);
-                    });
-
-            Sponge.getScheduler().createTaskBuilder().execute(
-                    task -> {
-                        try {
-                            commandBase.executeCommand(source, args);
-                            postTask.submit(this.container.getPlugin());
-                        } catch (TextMessageException e) {
-                            source.sendMessage(e.getText());
-                        } catch (Exception e2) {
-                            source.sendMessage(Text.of(TextColors.RED, "An error has occurred while attempting to execute this command!"));
-                            this.container.getLogger()
-                                    .error("An exception has occurred while attempting to execute the command " + this.base.aliases()[0] + "!", e2);
-                        }
-                    }).async().submit(this.container.getPlugin());
+            try {
+                container.getAsyncExecutor().submit(invocation, () -> invocation.execute(() -> commandBase.executeCommand(source, args)))
+                        .whenComplete((result, error) -> MainThreadQueue.execute(() -> {
+                            if (error != null) {
+                                invocation.handleFailure(error);
+                                return;
+                            }
+                            // Execute any runnables set for 'POST', back on
+                            // the main thread
+                            long postStart = System.nanoTime();
+                            pipeline.run(CommandPhase.POST, source, args);
+                            invocation.record(Phase.POST, postStart);
+                        }));
+            } catch (RejectedExecutionException e) {
+                source.sendMessage(CommandInvocation.BUSY_MESSAGE);
+                return CommandResult.empty();
+            }
 
             return CommandResult.success();
         }
 
         try {
-            CommandResult result = commandBase.executeCommand(source, args);
+            CommandResult result = invocation.execute(() -> commandBase.executeCommand(source, args));
             // Execute any runnables set for 'POST'. Note that the result is
             // effectively ignored.
-            this.checkPhase(CommandPhase.POST, source, args);
+            long postStart = System.nanoTime();
+            pipeline.run(CommandPhase.POST, source, args);
+            invocation.record(Phase.POST, postStart);
             return result;
-        } catch (TextMessageException e) {
-            source.sendMessage(e.getText());
-        } catch (Exception e2) {
-            source.sendMessage(Text.of(TextColors.RED, "An error has occurred while attempting to execute this command."));
-            this.container.getLogger().error("An exception has occurred while attempting to execute the command " + this.base.aliases()[0] + "!", e2);
+        } catch (Exception e) {
+            invocation.handleException(e);
         }
         // If errored
         return CommandResult.empty();
     }
 
-    private Optional<Text> checkCommandSource(Class<?> type, CommandSource source) {
-        // If it's CommandSource, don't bother with the checks below.
-        if (type.equals(CommandSource.class)) {
-            return Optional.empty();
-        }
-
-        // Most common is player, so it's at the top. Otherwise these are to be
-        // alphabetically ordered.
-        if (type.equals(Player.class) && !(source instanceof Player)) {
-            return Optional.of(Text.of(TextColors.RED, "You must be a player to execute this command!"));
-        } else if (type.equals(CommandBlock.class) && !(source instanceof CommandBlock)) {
-            return Optional.of(Text.of(TextColors.RED, "Only a command block may execute this command!"));
-        } else if (type.equals(CommandBlockMinecart.class) && !(source instanceof CommandBlockMinecart)) {
-            return Optional.of(Text.of(TextColors.RED, "Only a command block minecart may execute this command!"));
-        } else if (type.equals(CommandBlockSource.class) && !(source instanceof CommandBlockSource)) {
-            return Optional.of(Text.of(TextColors.RED, "Only a command block may execute this command!"));
-        } else if (type.equals(ConsoleSource.class) && !(source instanceof ConsoleSource)) {
-            return Optional.of(Text.of(TextColors.RED, "You must be the console to execute this command!"));
-        } else if (type.equals(ProxySource.class) && !(source instanceof ProxySource)) {
-            return Optional.of(Text.of(TextColors.RED, "Only proxy sources may execute this command!"));
-        } else if (type.equals(RconSource.class) && !(source instanceof RconSource)) {
-            return Optional.of(Text.of(TextColors.RED, "Only an rcon source may execute this command!"));
-        } else if (type.equals(RemoteSource.class) && !(source instanceof RemoteSource)) {
-            return Optional.of(Text.of(TextColors.RED, "Only remote sources may execute this command!"));
-        } else if (type.equals(SignSource.class) && !(source instanceof SignSource)) {
-            return Optional.of(Text.of(TextColors.RED, "Only sign may execute this command!"));
-        }
-        return Optional.empty();
-    }
-
-    private Optional<CommandRunnableResult> checkPhase(CommandPhase phase, CommandSource source, CommandContext args) {
-        for (Map.Entry<CommandRunnable, RunAt> runnableEntry : this.map.entrySet()) {
-            // Check if the runnable's phase is equal to the current phase
-            if (runnableEntry.getValue().phase().equals(phase)) {
-                // Run the runnable
-                CommandRunnableResult result = runnableEntry.getKey().run(source, args);
-                // If there is a result, return it so that we may stop the
-                // command
-                if (result.getResult() != null) {
-                    return Optional.of(result);
-                }
-            }
-        }
-        // Either no runnables were found, or they all allowed the command to
-        // continue running
-        return Optional.empty();
-    }
-
-    private boolean checkCommandState() {
-        for (CommandStore store : this.container.commandStores) {
-            if (store.command().getClass().equals(this.base.getClass())) {
-                return store.state().equals(CommandState.ENABLED);
-            }
+    private boolean checkCommandState(CommandInvocation invocation) {
+        CommandStore store = invocation.getContainer().getCommandStore(invocation.getCommand().getClass());
+        if (store != null) {
+            return store.state() == CommandState.ENABLED;
         }
         // Should never really happen, but if it does, then allow the command to
         // process anyway
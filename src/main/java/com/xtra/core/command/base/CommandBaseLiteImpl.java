@@ -25,53 +25,42 @@
 
 package com.xtra.core.command.base;
 
-import org.spongepowered.api.Sponge;
+import java.util.concurrent.RejectedExecutionException;
+
 import org.spongepowered.api.command.CommandException;
 import org.spongepowered.api.command.CommandResult;
 import org.spongepowered.api.command.CommandSource;
 import org.spongepowered.api.command.args.CommandContext;
-import org.spongepowered.api.text.Text;
-import org.spongepowered.api.text.format.TextColors;
-import org.spongepowered.api.util.TextMessageException;
 
 import com.xtra.api.command.annotation.RegisterCommand;
 import com.xtra.api.command.base.CommandBaseLite;
-import com.xtra.api.plugin.XtraCorePluginContainer;
 import com.xtra.api.util.command.CommandBaseLiteExecutor;
-import com.xtra.core.CoreImpl;
+import com.xtra.core.command.async.MainThreadQueue;
 
 public class CommandBaseLiteImpl implements CommandBaseLiteExecutor {
 
-    private XtraCorePluginContainer container;
-
     @Override
     public CommandResult execute(CommandBaseLite base, CommandSource source, CommandContext args) throws CommandException {
-        if (this.container == null) {
-            this.container = CoreImpl.instance.getCommandRegistry().getEntry(base.getClass()).get().getValue();
-        }
+        CommandInvocation invocation = CommandInvocation.create(base, source, args);
 
         if (base.getClass().getAnnotation(RegisterCommand.class).async()) {
-            Sponge.getScheduler().createTaskBuilder().execute(
-                    task -> {
-                        try {
-                            base.executeCommand(source, args);
-                        } catch (TextMessageException e) {
-                            source.sendMessage(e.getText());
-                        } catch (Exception e2) {
-                            source.sendMessage(Text.of(TextColors.RED, "An error has occurred while attempting to execute this command."));
-                            container.getLogger()
-                                    .error("An exception has occurred while attempting to execute the command " + base.aliases()[0] + "!", e2);
-                        }
-                    }).async().submit(container.getPlugin());
+            try {
+                invocation.getContainer().getAsyncExecutor().submit(invocation, () -> invocation.execute(() -> base.executeCommand(source, args)))
+                        .whenComplete((result, error) -> {
+                            if (error != null) {
+                                MainThreadQueue.execute(() -> invocation.handleFailure(error));
+                            }
+                        });
+            } catch (RejectedExecutionException e) {
+                source.sendMessage(CommandInvocation.BUSY_MESSAGE);
+                return CommandResult.empty();
+            }
             return CommandResult.success();
         } else {
             try {
-                return base.executeCommand(source, args);
-            } catch (TextMessageException e) {
-                source.sendMessage(e.getText());
-            } catch (Exception e2) {
-                source.sendMessage(Text.of(TextColors.RED, "An error has occurred while attempting to execute this command."));
-                container.getLogger().error("An exception has occurred while attempting to execute the command " + base.aliases()[0] + "!", e2);
+                return invocation.execute(() -> base.executeCommand(source, args));
+            } catch (Exception e) {
+                invocation.handleException(e);
             }
         }
         return CommandResult.empty();
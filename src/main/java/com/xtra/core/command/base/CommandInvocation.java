@@ -0,0 +1,181 @@
+/**
+ * This file is part of XtraCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016 - 2016 XtraStudio <https://github.com/XtraStudio>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.xtra.core.command.base;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
+import org.spongepowered.api.command.CommandResult;
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.command.args.CommandContext;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.format.TextColors;
+import org.spongepowered.api.util.TextMessageException;
+
+import com.xtra.api.command.Command;
+import com.xtra.core.CoreImpl;
+import com.xtra.core.command.stats.CommandStats;
+import com.xtra.core.command.stats.CommandStats.Phase;
+import com.xtra.core.plugin.XtraCorePluginContainerImpl;
+import com.xtra.core.util.store.CommandStore;
+
+/**
+ * The state of a single command execution. The command executors are shared by
+ * every command on the server, so anything belonging to one execution lives
+ * here instead, and concurrent executions never see each other's state.
+ */
+public class CommandInvocation {
+
+    public static final Text BUSY_MESSAGE = Text.of(TextColors.RED, "The server is too busy to execute this command right now, try again later.");
+    public static final Text TIMEOUT_MESSAGE = Text.of(TextColors.RED, "This command took too long to complete and has been stopped.");
+
+    private static final ClassValue<XtraCorePluginContainerImpl> CONTAINERS = new ClassValue<XtraCorePluginContainerImpl>() {
+
+        @SuppressWarnings("unchecked")
+        @Override
+        protected XtraCorePluginContainerImpl computeValue(Class<?> type) {
+            // Throws if the command isn't registered yet, in which case nothing
+            // is cached and the lookup is tried again on the next execution
+            return (XtraCorePluginContainerImpl) CoreImpl.instance.getCommandRegistry().getEntry((Class<? extends Command>) type).get()
+                    .getValue();
+        }
+    };
+
+    private final Command command;
+    private final XtraCorePluginContainerImpl container;
+    private final CommandSource source;
+    private final CommandContext args;
+    private final CommandStats stats;
+
+    private CommandInvocation(Command command, XtraCorePluginContainerImpl container, CommandSource source, CommandContext args) {
+        this.command = command;
+        this.container = container;
+        this.source = source;
+        this.args = args;
+        CommandStore store = container.getCommandStore(command.getClass());
+        // Commands without a store are not tracked
+        this.stats = store != null ? store.stats() : new CommandStats();
+        this.stats.recordInvocation();
+    }
+
+    public static CommandInvocation create(Command command, CommandSource source, CommandContext args) {
+        return new CommandInvocation(command, CONTAINERS.get(command.getClass()), source, args);
+    }
+
+    /**
+     * Executes the command itself, recording how long it took.
+     *
+     * @param executor Executes the command
+     * @return The result of the command
+     * @throws Exception If the command failed
+     */
+    public CommandResult execute(Callable<CommandResult> executor) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return executor.call();
+        } finally {
+            this.record(Phase.COMMAND, start);
+        }
+    }
+
+    /**
+     * Records the time spent in the specified phase.
+     *
+     * @param phase The phase
+     * @param start When the phase started, from {@link System#nanoTime()}
+     * @return The current time, which is when the next phase starts
+     */
+    public long record(Phase phase, long start) {
+        long now = System.nanoTime();
+        this.stats.record(phase, now - start);
+        return now;
+    }
+
+    public Command getCommand() {
+        return this.command;
+    }
+
+    public XtraCorePluginContainerImpl getContainer() {
+        return this.container;
+    }
+
+    public CommandSource getSource() {
+        return this.source;
+    }
+
+    public CommandContext getArgs() {
+        return this.args;
+    }
+
+    /**
+     * Handles the failure of an async command.
+     *
+     * @param error The error the command completed with
+     */
+    public void handleFailure(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error instanceof CancellationException) {
+            // Only cancelled once the source is gone
+            return;
+        }
+        this.stats.recordError();
+        if (error instanceof TimeoutException) {
+            this.source.sendMessage(TIMEOUT_MESSAGE);
+            this.container.getLogger().warn(error.getMessage());
+            return;
+        }
+        if (error instanceof Exception) {
+            this.report((Exception) error);
+            return;
+        }
+        this.source.sendMessage(Text.of(TextColors.RED, "An error has occurred while attempting to execute this command."));
+        this.container.getLogger().error("An error has occurred while attempting to execute the command " + this.command.aliases()[0] + "!", error);
+    }
+
+    /**
+     * Informs the source that the command has failed, and logs the exception
+     * if it wasn't meant to be sent to the source.
+     *
+     * @param e The exception thrown by the command
+     */
+    public void handleException(Exception e) {
+        this.stats.recordError();
+        this.report(e);
+    }
+
+    private void report(Exception e) {
+        if (e instanceof TextMessageException) {
+            this.source.sendMessage(((TextMessageException) e).getText());
+            return;
+        }
+        this.source.sendMessage(Text.of(TextColors.RED, "An error has occurred while attempting to execute this command."));
+        this.container.getLogger().error("An exception has occurred while attempting to execute the command " + this.command.aliases()[0] + "!", e);
+    }
+}
@@ -0,0 +1,121 @@
+/**
+ * This file is part of XtraCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016 - 2016 XtraStudio <https://github.com/XtraStudio>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.xtra.core.command.base;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nullable;
+
+import org.spongepowered.api.block.tileentity.CommandBlock;
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.command.source.CommandBlockSource;
+import org.spongepowered.api.command.source.ConsoleSource;
+import org.spongepowered.api.command.source.ProxySource;
+import org.spongepowered.api.command.source.RconSource;
+import org.spongepowered.api.command.source.RemoteSource;
+import org.spongepowered.api.command.source.SignSource;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.entity.vehicle.minecart.CommandBlockMinecart;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.format.TextColors;
+
+/**
+ * Checks whether a command source may execute a command with a certain target
+ * source type. A validator is created once per target source type, along with
+ * the message sent to rejected sources.
+ */
+public class CommandSourceValidator {
+
+    private static final Map<Class<?>, Text> MESSAGES = new ConcurrentHashMap<>();
+    private static final ClassValue<CommandSourceValidator> VALIDATORS = new ClassValue<CommandSourceValidator>() {
+
+        @Override
+        protected CommandSourceValidator computeValue(Class<?> type) {
+            // Types without a message, including CommandSource itself, are not
+            // checked at all
+            return new CommandSourceValidator(type, MESSAGES.get(type));
+        }
+    };
+
+    static {
+        register(Player.class, Text.of(TextColors.RED, "You must be a player to execute this command!"));
+        register(CommandBlock.class, Text.of(TextColors.RED, "Only a command block may execute this command!"));
+        register(CommandBlockMinecart.class, Text.of(TextColors.RED, "Only a command block minecart may execute this command!"));
+        register(CommandBlockSource.class, Text.of(TextColors.RED, "Only a command block may execute this command!"));
+        register(ConsoleSource.class, Text.of(TextColors.RED, "You must be the console to execute this command!"));
+        register(ProxySource.class, Text.of(TextColors.RED, "Only proxy sources may execute this command!"));
+        register(RconSource.class, Text.of(TextColors.RED, "Only an rcon source may execute this command!"));
+        register(RemoteSource.class, Text.of(TextColors.RED, "Only remote sources may execute this command!"));
+        register(SignSource.class, Text.of(TextColors.RED, "Only sign may execute this command!"));
+    }
+
+    private final Class<?> type;
+    @Nullable private final Text rejection;
+
+    private CommandSourceValidator(Class<?> type, @Nullable Text rejection) {
+        this.type = type;
+        this.rejection = rejection;
+    }
+
+    public static CommandSourceValidator get(Class<?> type) {
+        return VALIDATORS.get(type);
+    }
+
+    /**
+     * Registers the message sent to sources that are not of the specified
+     * type, when they attempt to execute a command targeting that type.
+     * Commands targeting a type without a registered message may be executed
+     * by any source.
+     *
+     * @param type The target source type
+     * @param rejection The message sent to rejected sources
+     */
+    public static void register(Class<?> type, Text rejection) {
+        checkNotNull(type, "Source type cannot be null!");
+        checkNotNull(rejection, "Rejection message cannot be null!");
+        MESSAGES.put(type, rejection);
+        // Recompute the validator if it was already used
+        VALIDATORS.remove(type);
+    }
+
+    /**
+     * Checks the specified source.
+     *
+     * @param source The source attempting to execute the command
+     * @return The message to send to the source if it was rejected, or null
+     *         if it may execute the command
+     */
+    @Nullable
+    public Text validate(CommandSource source) {
+        if (this.rejection == null || this.type.isInstance(source)) {
+            return null;
+        }
+        return this.rejection;
+    }
+}
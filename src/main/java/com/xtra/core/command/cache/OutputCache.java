@@ -0,0 +1,153 @@
+/**
+ * This file is part of XtraCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016 - 2016 XtraStudio <https://github.com/XtraStudio>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.xtra.core.command.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.command.args.CommandContext;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.xtra.api.command.Command;
+import com.xtra.core.command.annotation.CacheOutput;
+
+/**
+ * Caches the rendered output of commands annotated with {@link CacheOutput}.
+ * Commands render their output, such as a {@code PaginationList}, through
+ * {@link #get}, and only render it again once the cached output has expired or
+ * has been invalidated through the command handler.
+ */
+public class OutputCache {
+
+    private static final Set<OutputCache> COMMAND_DEPENDENT = ConcurrentHashMap.newKeySet();
+    private static final ClassValue<Optional<OutputCache>> CACHES = new ClassValue<Optional<OutputCache>>() {
+
+        @Override
+        protected Optional<OutputCache> computeValue(Class<?> type) {
+            CacheOutput settings = type.getAnnotation(CacheOutput.class);
+            if (settings == null) {
+                return Optional.empty();
+            }
+            OutputCache outputCache = new OutputCache(settings);
+            if (settings.dependsOnCommands()) {
+                COMMAND_DEPENDENT.add(outputCache);
+            }
+            return Optional.of(outputCache);
+        }
+    };
+
+    private CacheOutput settings;
+    private Cache<List<Object>, Object> cache;
+
+    private OutputCache(CacheOutput settings) {
+        this.settings = settings;
+        this.cache = CacheBuilder.newBuilder()
+                .expireAfterWrite(settings.expireAfterSeconds(), TimeUnit.SECONDS)
+                .maximumSize(settings.maximumSize())
+                .build();
+    }
+
+    /**
+     * Gets the cached output of the specified command for the source and
+     * arguments, rendering it if necessary. Commands without the
+     * {@link CacheOutput} annotation always render their output.
+     *
+     * @param command The command
+     * @param source The source executing the command
+     * @param args The arguments of the command
+     * @param renderer Renders the output
+     * @return The output
+     * @throws Exception If the output could not be rendered
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T get(Command command, CommandSource source, CommandContext args, Callable<T> renderer) throws Exception {
+        Optional<OutputCache> outputCache = CACHES.get(command.getClass());
+        if (!outputCache.isPresent()) {
+            return renderer.call();
+        }
+        try {
+            return (T) outputCache.get().cache.get(outputCache.get().createKey(source, args), renderer);
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Discards all cached output of the specified command.
+     *
+     * @param clazz The command class
+     */
+    public static void invalidate(Class<? extends Command> clazz) {
+        Optional<OutputCache> outputCache = CACHES.get(clazz);
+        if (outputCache.isPresent()) {
+            outputCache.get().cache.invalidateAll();
+        }
+    }
+
+    /**
+     * Discards all cached output of commands whose output describes other
+     * commands. Called whenever commands are registered or unregistered.
+     */
+    public static void invalidateCommandDependent() {
+        for (OutputCache outputCache : COMMAND_DEPENDENT) {
+            outputCache.cache.invalidateAll();
+        }
+    }
+
+    private List<Object> createKey(CommandSource source, CommandContext args) {
+        List<Object> key = new ArrayList<>(this.settings.arguments().length + 1);
+        for (String argument : this.settings.arguments()) {
+            List<String> values = new ArrayList<>();
+            for (Object value : args.getAll(argument)) {
+                values.add(value.toString().trim().toLowerCase(Locale.ROOT));
+            }
+            key.add(values);
+        }
+        // Which of the permissions the source has, as a bit set
+        long permissions = 0;
+        String[] permissionNodes = this.settings.permissions();
+        for (int i = 0; i < permissionNodes.length && i < Long.SIZE; i++) {
+            if (source.hasPermission(permissionNodes[i])) {
+                permissions |= 1L << i;
+            }
+        }
+        key.add(permissions);
+        return key;
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * This file is part of XtraCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016 - 2016 XtraStudio <https://github.com/XtraStudio>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.xtra.core.command.completion;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.spongepowered.api.command.CommandSource;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.xtra.core.registry.CommandRegistryImpl;
+
+/**
+ * Completes command paths for command sources, from the command trie of the
+ * registry. The suggestions only include commands the source may run, and are
+ * cached per source and input, so repeated tab completion does not walk the
+ * trie or check permissions again. Cached suggestions are discarded when
+ * commands change, and after a few seconds so that permission changes show.
+ */
+public class CommandCompletionProvider {
+
+    private static final int MAX_PATHS = 256;
+
+    private CommandRegistryImpl registry;
+    private Cache<List<String>, Suggestions> cache = CacheBuilder.newBuilder()
+            .expireAfterWrite(10, TimeUnit.SECONDS)
+            .maximumSize(4096)
+            .build();
+
+    public CommandCompletionProvider(CommandRegistryImpl registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Gets the suggestions for the last word of the input, which is a command
+     * path such as {@code xtracore co}.
+     * 
+     * @param source The source completing the input
+     * @param input The input
+     * @return The suggestions
+     */
+    public List<String> complete(CommandSource source, String input) {
+        checkNotNull(source, "Command source cannot be null!");
+        checkNotNull(input, "Input cannot be null!");
+        CommandTrie trie = this.registry.getCompletionTrie();
+        List<String> key = Arrays.asList(source.getIdentifier(), input.toLowerCase(Locale.ROOT));
+        Suggestions suggestions = this.cache.getIfPresent(key);
+        if (suggestions == null || suggestions.trie != trie) {
+            suggestions = new Suggestions(trie, createSuggestions(trie, source, input));
+            this.cache.put(key, suggestions);
+        }
+        // Copied, as Sponge may modify the list
+        return new ArrayList<>(suggestions.suggestions);
+    }
+
+    /**
+     * Gets the paths of the commands closest to the input that the source may
+     * run, for correcting mistyped input.
+     * 
+     * @param source The source
+     * @param input The input
+     * @param limit The maximum amount of paths
+     * @return The paths, closest first
+     */
+    public List<CommandPath> correct(CommandSource source, String input, int limit) {
+        checkNotNull(source, "Command source cannot be null!");
+        checkNotNull(input, "Input cannot be null!");
+        // Allow roughly one typo per four characters
+        int maxDistance = Math.max(1, Math.min(3, input.length() / 4));
+        List<CommandPath> paths = new ArrayList<>();
+        for (CommandPath path : this.registry.getCompletionTrie().closestTo(input, maxDistance, MAX_PATHS)) {
+            if (paths.size() >= limit) {
+                break;
+            }
+            if (path.testPermission(source)) {
+                paths.add(path);
+            }
+        }
+        return paths;
+    }
+
+    private static List<String> createSuggestions(CommandTrie trie, CommandSource source, String input) {
+        // The word being completed, counting an empty word after a trailing
+        // space
+        int word = input.split(" ", -1).length - 1;
+        Set<String> suggestions = new LinkedHashSet<>();
+        for (CommandPath path : trie.startingWith(input, MAX_PATHS)) {
+            String[] words = path.getPath().split(" ");
+            if (words.length > word && path.testPermission(source)) {
+                suggestions.add(words[word]);
+            }
+        }
+        return new ArrayList<>(suggestions);
+    }
+
+    private static class Suggestions {
+
+        // The trie the suggestions were created from
+        private CommandTrie trie;
+        private List<String> suggestions;
+
+        private Suggestions(CommandTrie trie, List<String> suggestions) {
+            this.trie = trie;
+            this.suggestions = suggestions;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * This file is part of XtraCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016 - 2016 XtraStudio <https://github.com/XtraStudio>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.xtra.core.command.completion;
+
+import java.util.Arrays;
+
+import org.spongepowered.api.service.permission.Subject;
+
+import com.xtra.api.command.Command;
+
+/**
+ * The full path of a command, such as {@code xtracore command}, together with
+ * the permissions of every command along the path.
+ */
+public class CommandPath {
+
+    private String path;
+    private Command command;
+    private String[] permissions;
+
+    public CommandPath(String path, Command command, String[] permissions) {
+        this.path = path;
+        this.command = command;
+        this.permissions = permissions;
+    }
+
+    /**
+     * Creates the path of a command without a parent.
+     * 
+     * @param alias The alias of the command
+     * @param command The command
+     * @return The path
+     */
+    public static CommandPath root(String alias, Command command) {
+        return new CommandPath(alias, command, command.permission() != null ? new String[] {command.permission()} : new String[0]);
+    }
+
+    /**
+     * Creates the path of a child command below this path.
+     * 
+     * @param alias The alias of the child command
+     * @param command The child command
+     * @return The path
+     */
+    public CommandPath child(String alias, Command command) {
+        String[] permissions = this.permissions;
+        if (command.permission() != null) {
+            permissions = Arrays.copyOf(this.permissions, this.permissions.length + 1);
+            permissions[this.permissions.length] = command.permission();
+        }
+        return new CommandPath(this.path + " " + alias, command, permissions);
+    }
+
+    public String getPath() {
+        return this.path;
+    }
+
+    public Command getCommand() {
+        return this.command;
+    }
+
+    /**
+     * Checks if the subject may run the command, which requires the
+     * permissions of all of its parent commands as well.
+     * 
+     * @param subject The subject
+     * @return If the subject may run the command
+     */
+    public boolean testPermission(Subject subject) {
+        for (String permission : this.permissions) {
+            if (!subject.hasPermission(permission)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
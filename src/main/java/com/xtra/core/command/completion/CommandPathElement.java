@@ -0,0 +1,77 @@
+/**
+ * This file is part of XtraCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016 - 2016 XtraStudio <https://github.com/XtraStudio>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.xtra.core.command.completion;
+
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.command.args.ArgumentParseException;
+import org.spongepowered.api.command.args.CommandArgs;
+import org.spongepowered.api.command.args.CommandContext;
+import org.spongepowered.api.command.args.CommandElement;
+import org.spongepowered.api.text.Text;
+
+import com.xtra.core.CoreImpl;
+import com.xtra.core.registry.CommandRegistryImpl;
+
+/**
+ * An argument taking the remaining arguments as the path of a command, such as
+ * {@code xtracore command}, with tab completion of the registered commands.
+ */
+public class CommandPathElement extends CommandElement {
+
+    public CommandPathElement(Text key) {
+        super(key);
+    }
+
+    @Nullable
+    @Override
+    protected Object parseValue(CommandSource source, CommandArgs args) throws ArgumentParseException {
+        StringBuilder path = new StringBuilder(args.next());
+        while (args.hasNext()) {
+            path.append(' ').append(args.next());
+        }
+        return path.toString();
+    }
+
+    @Override
+    public List<String> complete(CommandSource src, CommandArgs args, CommandContext context) {
+        StringBuilder input = new StringBuilder();
+        try {
+            while (args.hasNext()) {
+                if (input.length() > 0) {
+                    input.append(' ');
+                }
+                input.append(args.next());
+            }
+        } catch (ArgumentParseException e) {
+            // Cannot happen, as there is a next argument
+        }
+        return ((CommandRegistryImpl) CoreImpl.instance.getCommandRegistry()).getCompletions().complete(src, input.toString());
+    }
+}
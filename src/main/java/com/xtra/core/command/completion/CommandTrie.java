@@ -0,0 +1,260 @@
+/**
+ * This file is part of XtraCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016 - 2016 XtraStudio <https://github.com/XtraStudio>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.xtra.core.command.completion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+import javax.annotation.Nullable;
+
+/**
+ * A trie over the paths of the registered commands, such as {@code xtracore}
+ * and {@code xtracore command}, for completing and correcting command input.
+ * Paths are case folded. A trie is never modified: adding or removing a path
+ * returns a new trie sharing all nodes off that path, so a trie may be
+ * published to other threads as part of a registry snapshot.
+ */
+public class CommandTrie {
+
+    public static final CommandTrie EMPTY = new CommandTrie(Node.EMPTY);
+
+    private final Node root;
+
+    private CommandTrie(Node root) {
+        this.root = root;
+    }
+
+    public CommandTrie with(CommandPath path) {
+        return new CommandTrie(insert(this.root, fold(path.getPath()), 0, path));
+    }
+
+    public CommandTrie without(String path) {
+        Node root = remove(this.root, fold(path), 0);
+        return root == this.root ? this : new CommandTrie(root != null ? root : Node.EMPTY);
+    }
+
+    /**
+     * Gets the command with exactly the specified path, ignoring case.
+     * 
+     * @param path The path
+     * @return The command path, or null if not found
+     */
+    @Nullable
+    public CommandPath get(String path) {
+        Node node = this.find(fold(path));
+        return node != null ? node.value : null;
+    }
+
+    /**
+     * Gets the paths starting with the specified prefix, ignoring case, in
+     * alphabetical order.
+     * 
+     * @param prefix The prefix
+     * @param limit The maximum amount of paths
+     * @return The paths
+     */
+    public List<CommandPath> startingWith(String prefix, int limit) {
+        List<CommandPath> paths = new ArrayList<>();
+        Node node = this.find(fold(prefix));
+        if (node != null) {
+            collect(node, paths, limit);
+        }
+        return paths;
+    }
+
+    /**
+     * Gets the paths within the specified edit distance of the query, ignoring
+     * case. The closest paths come first.
+     * 
+     * @param query The query
+     * @param maxDistance The maximum edit distance
+     * @param limit The maximum amount of paths
+     * @return The paths
+     */
+    public List<CommandPath> closestTo(String query, int maxDistance, int limit) {
+        String folded = fold(query);
+        int[] row = new int[folded.length() + 1];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = i;
+        }
+        List<Match> matches = new ArrayList<>();
+        for (int i = 0; i < this.root.keys.length; i++) {
+            search(this.root.children[i], this.root.keys[i], folded, row, maxDistance, matches);
+        }
+        matches.sort(Comparator.<Match>comparingInt(match -> match.distance).thenComparing(match -> match.path.getPath()));
+        List<CommandPath> paths = new ArrayList<>(Math.min(limit, matches.size()));
+        for (int i = 0; i < matches.size() && i < limit; i++) {
+            paths.add(matches.get(i).path);
+        }
+        return paths;
+    }
+
+    @Nullable
+    private Node find(String key) {
+        Node node = this.root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.child(key.charAt(i));
+        }
+        return node;
+    }
+
+    private static Node insert(Node node, String key, int index, CommandPath value) {
+        if (index == key.length()) {
+            return new Node(node.keys, node.children, value);
+        }
+        char c = key.charAt(index);
+        Node child = node.child(c);
+        return node.withChild(c, insert(child != null ? child : Node.EMPTY, key, index + 1, value));
+    }
+
+    @Nullable
+    private static Node remove(Node node, String key, int index) {
+        if (index == key.length()) {
+            return node.keys.length == 0 ? null : new Node(node.keys, node.children, null);
+        }
+        char c = key.charAt(index);
+        Node child = node.child(c);
+        if (child == null) {
+            return node;
+        }
+        Node newChild = remove(child, key, index + 1);
+        if (newChild == child) {
+            return node;
+        }
+        if (newChild != null) {
+            return node.withChild(c, newChild);
+        }
+        Node newNode = node.withoutChild(c);
+        // Prune nodes which no longer lead to any path
+        return newNode.keys.length == 0 && newNode.value == null ? null : newNode;
+    }
+
+    private static boolean collect(Node node, List<CommandPath> paths, int limit) {
+        if (node.value != null) {
+            if (paths.size() >= limit) {
+                return false;
+            }
+            paths.add(node.value);
+        }
+        for (Node child : node.children) {
+            if (!collect(child, paths, limit)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void search(Node node, char c, String query, int[] previousRow, int maxDistance, List<Match> matches) {
+        // One row of the Levenshtein matrix per trie node, shared by all paths
+        // through the node
+        int[] row = new int[previousRow.length];
+        row[0] = previousRow[0] + 1;
+        int min = row[0];
+        for (int i = 1; i < row.length; i++) {
+            int cost = query.charAt(i - 1) == c ? 0 : 1;
+            row[i] = Math.min(Math.min(row[i - 1] + 1, previousRow[i] + 1), previousRow[i - 1] + cost);
+            min = Math.min(min, row[i]);
+        }
+        if (node.value != null && row[row.length - 1] <= maxDistance) {
+            matches.add(new Match(node.value, row[row.length - 1]));
+        }
+        if (min <= maxDistance) {
+            for (int i = 0; i < node.keys.length; i++) {
+                search(node.children[i], node.keys[i], query, row, maxDistance, matches);
+            }
+        }
+    }
+
+    private static String fold(String path) {
+        return path.toLowerCase(Locale.ROOT);
+    }
+
+    private static class Node {
+
+        private static final Node EMPTY = new Node(new char[0], new Node[0], null);
+
+        // Sorted, so children are visited alphabetically
+        private final char[] keys;
+        private final Node[] children;
+        @Nullable private final CommandPath value;
+
+        private Node(char[] keys, Node[] children, @Nullable CommandPath value) {
+            this.keys = keys;
+            this.children = children;
+            this.value = value;
+        }
+
+        @Nullable
+        private Node child(char c) {
+            int index = Arrays.binarySearch(this.keys, c);
+            return index >= 0 ? this.children[index] : null;
+        }
+
+        private Node withChild(char c, Node child) {
+            int index = Arrays.binarySearch(this.keys, c);
+            if (index >= 0) {
+                Node[] children = this.children.clone();
+                children[index] = child;
+                return new Node(this.keys, children, this.value);
+            }
+            int insertion = -index - 1;
+            char[] keys = new char[this.keys.length + 1];
+            Node[] children = new Node[this.children.length + 1];
+            System.arraycopy(this.keys, 0, keys, 0, insertion);
+            System.arraycopy(this.children, 0, children, 0, insertion);
+            keys[insertion] = c;
+            children[insertion] = child;
+            System.arraycopy(this.keys, insertion, keys, insertion + 1, this.keys.length - insertion);
+            System.arraycopy(this.children, insertion, children, insertion + 1, this.children.length - insertion);
+            return new Node(keys, children, this.value);
+        }
+
+        private Node withoutChild(char c) {
+            int index = Arrays.binarySearch(this.keys, c);
+            char[] keys = new char[this.keys.length - 1];
+            Node[] children = new Node[this.children.length - 1];
+            System.arraycopy(this.keys, 0, keys, 0, index);
+            System.arraycopy(this.children, 0, children, 0, index);
+            System.arraycopy(this.keys, index + 1, keys, index, keys.length - index);
+            System.arraycopy(this.children, index + 1, children, index, children.length - index);
+            return new Node(keys, children, this.value);
+        }
+    }
+
+    private static class Match {
+
+        private CommandPath path;
+        private int distance;
+
+        private Match(CommandPath path, int distance) {
+            this.path = path;
+            this.distance = distance;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/**
+ * This file is part of XtraCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016 - 2016 XtraStudio <https://github.com/XtraStudio>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.xtra.core.command.ratelimit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A lock-free hash table from long keys to the theoretical arrival times of a
+ * {@link RateLimiter}. Keys and arrival times are stored next to each other in
+ * a single {@link AtomicLongArray}, so checking a limit neither boxes nor
+ * allocates.
+ *
+ * <p>Slots are claimed with a compare-and-set on the key and are never freed
+ * on their own. Once the table fills up, its entries are migrated to a new
+ * table, which drops the expired ones. The migrating thread freezes every
+ * slot, and a thread finding the slot of its key frozen copies it to the new
+ * table itself before continuing there, so no update is ever lost.</p>
+ */
+public class ArrivalTable {
+
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int MAX_PROBES = 32;
+    // The keys of unclaimed slots, and of slots that were still unclaimed
+    // when their table was migrated
+    private static final long EMPTY = 0;
+    private static final long MOVED = 1;
+    // Arrival times are stored relative to the epoch, so they are positive
+    // and the sign bit is free to mark frozen slots
+    private static final long UNSET = 0;
+    private static final long FROZEN = Long.MIN_VALUE;
+
+    private final long epoch = System.nanoTime() - 1;
+    private final AtomicReference<Table> table = new AtomicReference<>(new Table(INITIAL_CAPACITY));
+
+    /**
+     * Counts an arrival for the specified key with the generic cell rate
+     * algorithm, if it is allowed.
+     *
+     * @param key The key
+     * @param now The current time, from {@link System#nanoTime()}
+     * @param emissionInterval The time between two arrivals
+     * @param tolerance How far ahead of time a key may be
+     * @return 0 if the arrival is allowed, otherwise how many nanoseconds
+     *         remain until it is
+     */
+    public long acquire(long key, long now, long emissionInterval, long tolerance) {
+        key = normalize(key);
+        long relativeNow = now - this.epoch;
+        Table table = this.table.get();
+        while (true) {
+            int slot = table.find(key);
+            if (slot < 0) {
+                table = this.next(table, relativeNow);
+                continue;
+            }
+            long current = table.slots.get(slot);
+            if (current < 0) {
+                // Being migrated, so the new table must hold the arrival time
+                // before it is updated there
+                Table next = table.next.get();
+                next.merge(this, key, current & ~FROZEN, relativeNow);
+                table = next;
+                continue;
+            }
+            long arrival = current == UNSET ? relativeNow : current;
+            long earliest = arrival - tolerance;
+            if (relativeNow - earliest < 0) {
+                return earliest - relativeNow;
+            }
+            if (table.slots.compareAndSet(slot, current, Math.max(arrival, relativeNow) + emissionInterval)) {
+                if (table.size.get() > table.threshold) {
+                    this.next(table, relativeNow);
+                }
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Gets the table following the specified one, migrating the specified
+     * table if that has not started yet.
+     */
+    private Table next(Table table, long relativeNow) {
+        Table next = table.next.get();
+        if (next != null) {
+            return next;
+        }
+        int live = 0;
+        for (int i = 1; i < table.slots.length(); i += 2) {
+            if ((table.slots.get(i) & ~FROZEN) - relativeNow > 0) {
+                live++;
+            }
+        }
+        // Less than half full once migrated
+        int capacity = Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(1, live)) << 2);
+        int size = table.size.get();
+        if (size <= table.threshold && live > size / 2) {
+            // Too many of the keys probe the same slots, and they would
+            // again in a table of the same capacity
+            capacity = Math.max(capacity, (table.mask + 1) * 2);
+        }
+        if (!table.next.compareAndSet(null, new Table(capacity))) {
+            return table.next.get();
+        }
+        next = table.next.get();
+        for (int i = 0; i < table.slots.length(); i += 2) {
+            if (table.slots.get(i) == EMPTY && table.slots.compareAndSet(i, EMPTY, MOVED)) {
+                continue;
+            }
+            long value = freeze(table.slots, i + 1);
+            // Expired entries are no different from missing ones
+            if (value - relativeNow > 0) {
+                next.merge(this, table.slots.get(i), value, relativeNow);
+            }
+        }
+        table.migrated = true;
+        // Only tables whose predecessors are completely migrated are used to
+        // start lookups
+        Table current = this.table.get();
+        while (current.migrated && this.table.compareAndSet(current, current.next.get())) {
+            current = current.next.get();
+        }
+        return next;
+    }
+
+    private static long freeze(AtomicLongArray slots, int slot) {
+        while (true) {
+            long value = slots.get(slot);
+            if (value < 0) {
+                return value & ~FROZEN;
+            }
+            if (slots.compareAndSet(slot, value, value | FROZEN)) {
+                return value;
+            }
+        }
+    }
+
+    private static long normalize(long key) {
+        // The keys are already mixed, so this barely adds any collisions
+        return key == EMPTY || key == MOVED ? key + 2 : key;
+    }
+
+    private static class Table {
+
+        private final AtomicLongArray slots;
+        private final int mask;
+        private final int threshold;
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicReference<Table> next = new AtomicReference<>();
+        private volatile boolean migrated;
+
+        private Table(int capacity) {
+            this.slots = new AtomicLongArray(capacity * 2);
+            this.mask = capacity - 1;
+            this.threshold = capacity / 4 * 3;
+        }
+
+        /**
+         * Finds the slot of the arrival time of the specified key, claiming a
+         * slot if the key has none.
+         *
+         * @return The slot, or -1 if the key is in a following table
+         */
+        private int find(long key) {
+            int index = (int) (key ^ (key >>> 32));
+            for (int probe = 0; probe < MAX_PROBES; probe++) {
+                int slot = ((index + probe) & this.mask) << 1;
+                long current = this.slots.get(slot);
+                if (current == EMPTY) {
+                    if (this.slots.compareAndSet(slot, EMPTY, key)) {
+                        this.size.incrementAndGet();
+                        return slot + 1;
+                    }
+                    current = this.slots.get(slot);
+                }
+                if (current == key) {
+                    return slot + 1;
+                }
+                if (current == MOVED) {
+                    // Slots never become empty again, so the key was not
+                    // claimed before this table was migrated
+                    return -1;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Raises the arrival time of the specified key to at least the
+         * specified value.
+         */
+        private void merge(ArrivalTable owner, long key, long value, long relativeNow) {
+            Table table = this;
+            while (true) {
+                int slot = table.find(key);
+                if (slot < 0) {
+                    table = owner.next(table, relativeNow);
+                    continue;
+                }
+                long current = table.slots.get(slot);
+                if (current < 0) {
+                    value = Math.max(value, current & ~FROZEN);
+                    table = table.next.get();
+                    continue;
+                }
+                if (current >= value || table.slots.compareAndSet(slot, current, value)) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/**
+ * This file is part of XtraCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016 - 2016 XtraStudio <https://github.com/XtraStudio>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.xtra.core.command.ratelimit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.command.source.ConsoleSource;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.format.TextColors;
+
+/**
+ * Limits how often a source may execute a command. Rate limiters are added to
+ * commands through the command runnable handler, and are checked before any
+ * command runnables run. The console is never limited.
+ *
+ * <p>Limits are tracked with the generic cell rate algorithm: every source only
+ * needs a single timestamp, which is updated with a compare-and-set in an
+ * {@link ArrivalTable}, so checking a limit never blocks. Sources that have
+ * not executed the command for long enough to be fully refilled are forgotten
+ * once the table fills up.</p>
+ */
+public class RateLimiter {
+
+    // The time between two tokens, and how far ahead of time a source may be
+    private final long emissionInterval;
+    private final long tolerance;
+    private boolean shared;
+    @Nullable private String bypassPermission;
+
+    // Theoretical arrival times by source and command key
+    private final ArrivalTable arrivals = new ArrivalTable();
+
+    private RateLimiter(long emissionInterval, int capacity) {
+        this.emissionInterval = emissionInterval;
+        this.tolerance = emissionInterval * (capacity - 1);
+    }
+
+    /**
+     * Creates a rate limiter which allows a source to execute a command once
+     * every period.
+     *
+     * @param period The cooldown
+     * @param unit The unit of the cooldown
+     * @return The new rate limiter
+     */
+    public static RateLimiter cooldown(long period, TimeUnit unit) {
+        return tokenBucket(1, period, unit);
+    }
+
+    /**
+     * Creates a rate limiter which allows a source to execute a command up to
+     * capacity times in a burst, after which one execution is allowed every
+     * refill period.
+     *
+     * @param capacity The maximum burst
+     * @param refillPeriod The time it takes to refill a single execution
+     * @param unit The unit of the refill period
+     * @return The new rate limiter
+     */
+    public static RateLimiter tokenBucket(int capacity, long refillPeriod, TimeUnit unit) {
+        checkArgument(capacity > 0, "Capacity must be positive!");
+        checkArgument(refillPeriod > 0, "Refill period must be positive!");
+        return new RateLimiter(unit.toNanos(refillPeriod), capacity);
+    }
+
+    /**
+     * Shares the limit between all commands this rate limiter is added to,
+     * instead of limiting each command separately.
+     *
+     * @return This rate limiter
+     */
+    public RateLimiter shared() {
+        this.shared = true;
+        return this;
+    }
+
+    /**
+     * Sets a permission which exempts sources from this limit.
+     *
+     * @param permission The permission
+     * @return This rate limiter
+     */
+    public RateLimiter bypassPermission(String permission) {
+        this.bypassPermission = permission;
+        return this;
+    }
+
+    /**
+     * Checks the limit for the specified source, and counts the execution if
+     * it is allowed.
+     *
+     * @param commandKey A key unique to the command being executed
+     * @param source The source executing the command
+     * @return The message to send to the source if it is limited, or null if
+     *         it may execute the command
+     */
+    @Nullable
+    public Text check(long commandKey, CommandSource source) {
+        if (source instanceof ConsoleSource || (this.bypassPermission != null && source.hasPermission(this.bypassPermission))) {
+            return null;
+        }
+        long key = mix(sourceKey(source), this.shared ? 0 : commandKey);
+        long wait = this.arrivals.acquire(key, System.nanoTime(), this.emissionInterval, this.tolerance);
+        if (wait > 0) {
+            return Text.of(TextColors.RED, "You must wait ", formatWait(wait), " before using this command again.");
+        }
+        return null;
+    }
+
+    /**
+     * Gets the key of the specified command. The key is derived from the
+     * class name, so it stays the same for as long as the command exists.
+     *
+     * @param clazz The command class
+     * @return The command key
+     */
+    public static long commandKey(Class<?> clazz) {
+        return hash(clazz.getName());
+    }
+
+    // 64 bit FNV-1a
+    private static long hash(String name) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < name.length(); i++) {
+            hash ^= name.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    private static long sourceKey(CommandSource source) {
+        if (source instanceof Player) {
+            UUID uniqueId = ((Player) source).getUniqueId();
+            return uniqueId.getMostSignificantBits() ^ Long.rotateLeft(uniqueId.getLeastSignificantBits(), 32);
+        }
+        // Not the 32 bit hash code, which would make different consoles and
+        // command blocks share their limits much more often
+        return hash(source.getIdentifier());
+    }
+
+    // Spreads both keys over the full 64 bits, see the murmur3 finalizer
+    private static long mix(long sourceKey, long commandKey) {
+        long h = sourceKey * 0x9E3779B97F4A7C15L + commandKey;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static String formatWait(long nanos) {
+        long seconds = (TimeUnit.NANOSECONDS.toMillis(nanos) + 999) / 1000;
+        return seconds == 1 ? "1 second" : seconds + " seconds";
+    }
+}
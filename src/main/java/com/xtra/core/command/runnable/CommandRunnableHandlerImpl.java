@@ -27,11 +27,14 @@ package com.xtra.core.command.runnable;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import com.xtra.api.command.Command;
 import com.xtra.api.command.runnable.CommandRunnable;
 import com.xtra.api.command.runnable.CommandRunnableHandler;
+import com.xtra.core.command.ratelimit.RateLimiter;
 import com.xtra.core.internal.Internals;
 import com.xtra.core.plugin.XtraCorePluginContainerImpl;
 
@@ -51,28 +54,47 @@ public class CommandRunnableHandlerImpl implements CommandRunnableHandler {
     @SuppressWarnings("unchecked")
     public void add(CommandRunnable runnable, Class<? extends Command>... classes) {
         checkNotNull(runnable, "Command runnable cannot be null!");
-        for (Class<? extends Command> clazz : classes) {
-            this.container.commandRunnables.put(clazz, runnable);
-        }
+        this.container.addRunnable(runnable, Arrays.asList(classes));
     }
 
     @Override
     public void addForAllCommands(CommandRunnable runnable) {
         checkNotNull(runnable, "Command runnable cannot be null!");
+        List<Class<? extends Command>> commands = new ArrayList<>();
         for (Command command : this.container.getCommandHandler().get().getCommands()) {
-            this.container.commandRunnables.put(command.getClass(), runnable);
+            commands.add(command.getClass());
         }
+        this.container.addRunnable(runnable, commands);
     }
 
     @Override
     @SuppressWarnings("unchecked")
     public void addForAllCommandsExcept(CommandRunnable runnable, Class<? extends Command>... classes) {
         checkNotNull(runnable, "Command runnable cannot be null!");
+        List<Class<? extends Command>> commands = new ArrayList<>();
         for (Command command : this.container.getCommandHandler().get().getCommands()) {
             if (!Arrays.asList(classes).contains(command.getClass())) {
-                this.container.commandRunnables.put(command.getClass(), runnable);
+                commands.add(command.getClass());
             }
         }
+        this.container.addRunnable(runnable, commands);
+    }
+
+    /**
+     * Adds a rate limiter to the specified commands. Rate limiters are checked
+     * before any of the runnables of a command run.
+     * 
+     * @param limiter The rate limiter
+     * @param classes The commands to limit
+     */
+    @SuppressWarnings("unchecked")
+    public void addRateLimit(RateLimiter limiter, Class<? extends Command>... classes) {
+        checkNotNull(limiter, "Rate limiter cannot be null!");
+        this.container.addRateLimiter(limiter, Arrays.asList(classes));
+    }
+
+    public void removeRateLimits(Class<? extends Command> clazz) {
+        this.container.removeRateLimiters(clazz);
     }
 
     @Override
@@ -82,6 +104,6 @@ public class CommandRunnableHandlerImpl implements CommandRunnableHandler {
 
     @Override
     public void removeRunnables(Class<? extends Command> clazz) {
-        this.container.commandRunnables.removeAll(clazz);
+        this.container.removeRunnables(clazz);
     }
 }
@@ -0,0 +1,183 @@
+/**
+ * This file is part of XtraCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016 - 2016 XtraStudio <https://github.com/XtraStudio>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.xtra.core.command.runnable;
+
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.command.args.CommandContext;
+import org.spongepowered.api.text.Text;
+
+import com.xtra.api.command.Command;
+import com.xtra.api.command.annotation.RunAt;
+import com.xtra.api.command.runnable.CommandPhase;
+import com.xtra.api.command.runnable.CommandRunnable;
+import com.xtra.api.command.runnable.CommandRunnableResult;
+import com.xtra.api.plugin.XtraCorePluginContainer;
+import com.xtra.core.command.ratelimit.RateLimiter;
+import com.xtra.core.util.map.MapSorter;
+
+/**
+ * The rate limiters and command runnables of a single command, with the
+ * runnables sorted by priority and split up by phase ahead of time. A
+ * pipeline is compiled once and reused for every execution until the
+ * runnables of the command change.
+ */
+public class CommandRunnablePipeline {
+
+    public static final CommandRunnablePipeline EMPTY = new CommandRunnablePipeline(0, new RateLimiter[0], new CommandRunnable[0],
+            new CommandRunnable[0], new CommandRunnable[0]);
+
+    // If RunAt wasn't specified, use defaults
+    private static final RunAt DEFAULT_RUN_AT = new RunAt() {
+
+        @Override
+        public Class<? extends Annotation> annotationType() {
+            return RunAt.class;
+        }
+
+        @Override
+        public int priority() {
+            return 1000;
+        }
+
+        @Override
+        public CommandPhase phase() {
+            return CommandPhase.START;
+        }
+    };
+
+    private long commandKey;
+    private RateLimiter[] limiters;
+    private CommandRunnable[] pre;
+    private CommandRunnable[] start;
+    private CommandRunnable[] post;
+
+    private CommandRunnablePipeline(long commandKey, RateLimiter[] limiters, CommandRunnable[] pre, CommandRunnable[] start,
+            CommandRunnable[] post) {
+        this.commandKey = commandKey;
+        this.limiters = limiters;
+        this.pre = pre;
+        this.start = start;
+        this.post = post;
+    }
+
+    public static CommandRunnablePipeline compile(XtraCorePluginContainer container, Class<? extends Command> clazz,
+            Collection<CommandRunnable> runnables, Collection<RateLimiter> limiters) {
+        if (runnables.isEmpty() && limiters.isEmpty()) {
+            return EMPTY;
+        }
+        Map<CommandRunnable, RunAt> map = new HashMap<>();
+        for (CommandRunnable runnable : runnables) {
+            // Put the command runnable as well as the RunAt annotation into
+            // our mapping
+            RunAt runAt = null;
+            try {
+                runAt = runnable.getClass().getMethod("run", CommandSource.class, CommandContext.class).getAnnotation(RunAt.class);
+            } catch (NoSuchMethodException | SecurityException e) {
+                container.getLogger().error("An error has occurred while attempting to gather the RunAt's for the CommandRunnable's!", e);
+            }
+            map.put(runnable, runAt != null ? runAt : DEFAULT_RUN_AT);
+        }
+
+        List<CommandRunnable> pre = new ArrayList<>();
+        List<CommandRunnable> start = new ArrayList<>();
+        List<CommandRunnable> post = new ArrayList<>();
+        // Sort the mapping by priority specified in RunAt
+        for (Map.Entry<CommandRunnable, RunAt> entry : MapSorter.sortRunAtPriority(map).entrySet()) {
+            if (entry.getValue().phase().equals(CommandPhase.PRE)) {
+                pre.add(entry.getKey());
+            } else if (entry.getValue().phase().equals(CommandPhase.START)) {
+                start.add(entry.getKey());
+            } else if (entry.getValue().phase().equals(CommandPhase.POST)) {
+                post.add(entry.getKey());
+            }
+        }
+        return new CommandRunnablePipeline(RateLimiter.commandKey(clazz), limiters.toArray(new RateLimiter[limiters.size()]),
+                pre.toArray(new CommandRunnable[pre.size()]), start.toArray(new CommandRunnable[start.size()]),
+                post.toArray(new CommandRunnable[post.size()]));
+    }
+
+    /**
+     * Checks the rate limiters of the command, which happens before any of
+     * the runnables run.
+     *
+     * @param source The command source
+     * @return The message to send to the source if it is limited, or null if
+     *         the command may continue
+     */
+    @Nullable
+    public Text checkRateLimits(CommandSource source) {
+        for (int i = 0; i < this.limiters.length; i++) {
+            Text rejection = this.limiters[i].check(this.commandKey, source);
+            if (rejection != null) {
+                return rejection;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Runs the runnables of the specified phase, in order of priority, until
+     * one of them stops the command.
+     *
+     * @param phase The phase
+     * @param source The command source
+     * @param args The command arguments
+     * @return The result that stopped the command, or null if the command
+     *         may continue
+     */
+    @Nullable
+    public CommandRunnableResult run(CommandPhase phase, CommandSource source, CommandContext args) {
+        CommandRunnable[] runnables = this.get(phase);
+        for (int i = 0; i < runnables.length; i++) {
+            CommandRunnableResult result = runnables[i].run(source, args);
+            // If there is a result, return it so that we may stop the command
+            if (result.getResult() != null) {
+                return result;
+            }
+        }
+        // Either no runnables were found, or they all allowed the command to
+        // continue running
+        return null;
+    }
+
+    private CommandRunnable[] get(CommandPhase phase) {
+        if (phase.equals(CommandPhase.PRE)) {
+            return this.pre;
+        } else if (phase.equals(CommandPhase.START)) {
+            return this.start;
+        }
+        return this.post;
+    }
+}
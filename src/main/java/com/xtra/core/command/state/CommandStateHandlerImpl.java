@@ -27,13 +27,20 @@ package com.xtra.core.command.state;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import com.xtra.api.command.Command;
 import com.xtra.api.command.state.CommandState;
 import com.xtra.api.command.state.CommandStateHandler;
+import com.xtra.api.text.HelpPaginationHandler;
 import com.xtra.core.internal.Internals;
 import com.xtra.core.plugin.XtraCorePluginContainerImpl;
+import com.xtra.core.text.HelpPaginationHandlerImpl;
 import com.xtra.core.util.store.CommandStore;
 
 public class CommandStateHandlerImpl implements CommandStateHandler {
@@ -52,20 +59,56 @@ public class CommandStateHandlerImpl implements CommandStateHandler {
     public void setState(Class<? extends Command> clazz, CommandState state) {
         checkNotNull(clazz, "Command class cannot be null!");
         checkNotNull(state, "Command state cannot be null!");
-        for (CommandStore store : this.container.commandStores) {
-            if (store.command().getClass().equals(clazz)) {
-                store.setState(state);
+        if (this.applyState(clazz, state)) {
+            this.updateHelp(Collections.singleton(clazz));
+        }
+    }
+
+    /**
+     * Sets the states of several commands at once. Commands that do not
+     * belong to this plugin are ignored.
+     * 
+     * @param states The new states, by command class
+     */
+    public void setStates(Map<Class<? extends Command>, CommandState> states) {
+        checkNotNull(states, "Command states cannot be null!");
+        List<Class<? extends Command>> changed = new ArrayList<>();
+        for (Map.Entry<Class<? extends Command>, CommandState> entry : states.entrySet()) {
+            checkNotNull(entry.getKey(), "Command class cannot be null!");
+            checkNotNull(entry.getValue(), "Command state cannot be null!");
+            if (this.applyState(entry.getKey(), entry.getValue())) {
+                changed.add(entry.getKey());
             }
         }
+        // The help list is updated once for all changes
+        if (!changed.isEmpty()) {
+            this.updateHelp(changed);
+        }
+    }
+
+    private boolean applyState(Class<? extends Command> clazz, CommandState state) {
+        CommandStore store = this.container.getCommandStore(clazz);
+        if (store == null || store.state() == state) {
+            return false;
+        }
+        store.setState(state);
+        return true;
+    }
+
+    private void updateHelp(Collection<Class<? extends Command>> classes) {
+        // Only enabled commands are shown in the help list
+        Optional<HelpPaginationHandler> helpHandler = this.container.getHelpPaginationHandler();
+        if (helpHandler.isPresent()) {
+            ((HelpPaginationHandlerImpl) helpHandler.get()).update(classes);
+        }
     }
 
     @Override
     public Optional<CommandState> getState(Class<? extends Command> clazz) {
         checkNotNull(clazz, "Command class cannot be null!");
-        for (CommandStore store : this.container.commandStores) {
-            if (store.command().getClass().equals(clazz)) {
-                return Optional.of(store.state());
-            }
+        CommandStore store = this.container.getCommandStore(clazz);
+        if (store != null) {
+            return Optional.of(store.state());
         }
         return Optional.empty();
     }
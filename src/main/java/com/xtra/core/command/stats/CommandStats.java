@@ -0,0 +1,90 @@
+/**
+ * This file is part of XtraCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016 - 2016 XtraStudio <https://github.com/XtraStudio>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.xtra.core.command.stats;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The execution statistics of a single command. Counters are striped, so
+ * commands executing at the same time on different threads don't contend.
+ */
+public class CommandStats {
+
+    private LongAdder invocations = new LongAdder();
+    private LongAdder errors = new LongAdder();
+    private Map<Phase, LatencyHistogram> histograms = new EnumMap<>(Phase.class);
+
+    public CommandStats() {
+        for (Phase phase : Phase.values()) {
+            this.histograms.put(phase, new LatencyHistogram());
+        }
+    }
+
+    public void recordInvocation() {
+        this.invocations.increment();
+    }
+
+    public void recordError() {
+        this.errors.increment();
+    }
+
+    public void record(Phase phase, long nanos) {
+        this.histograms.get(phase).record(nanos);
+    }
+
+    public long getInvocations() {
+        return this.invocations.sum();
+    }
+
+    public long getErrors() {
+        return this.errors.sum();
+    }
+
+    public LatencyHistogram getHistogram(Phase phase) {
+        return this.histograms.get(phase);
+    }
+
+    public enum Phase {
+        /**
+         * The rate limits and the PRE runnables.
+         */
+        PRE,
+        /**
+         * The state and source checks, and the START runnables.
+         */
+        START,
+        /**
+         * The command itself.
+         */
+        COMMAND,
+        /**
+         * The POST runnables.
+         */
+        POST
+    }
+}
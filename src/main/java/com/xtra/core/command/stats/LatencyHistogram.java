@@ -0,0 +1,117 @@
+/**
+ * This file is part of XtraCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016 - 2016 XtraStudio <https://github.com/XtraStudio>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.xtra.core.command.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies in nanoseconds. Values are bucketed by their power
+ * of two and then into {@value #SUB_BUCKETS} linear sub buckets, so every
+ * bucket is at most 12.5% wide relative to its value, no matter how large the
+ * value is. Recording a value never blocks or allocates.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+    private LongAdder count = new LongAdder();
+    private LongAdder total = new LongAdder();
+    private AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        this.buckets.incrementAndGet(index(nanos));
+        this.count.increment();
+        this.total.add(nanos);
+        long currentMax = this.max.get();
+        while (nanos > currentMax && !this.max.compareAndSet(currentMax, nanos)) {
+            currentMax = this.max.get();
+        }
+    }
+
+    public long getCount() {
+        return this.count.sum();
+    }
+
+    public long getMean() {
+        long count = this.count.sum();
+        return count == 0 ? 0 : this.total.sum() / count;
+    }
+
+    public long getMax() {
+        return this.max.get();
+    }
+
+    /**
+     * Gets the value below which the specified fraction of the recorded values
+     * fall. The value is the upper bound of the bucket it falls into, and is
+     * never higher than the maximum.
+     *
+     * @param fraction The fraction, between 0 and 1
+     * @return The value in nanoseconds
+     */
+    public long getPercentile(double fraction) {
+        long count = this.count.sum();
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(count * fraction));
+        long seen = 0;
+        for (int i = 0; i < this.buckets.length(); i++) {
+            seen += this.buckets.get(i);
+            if (seen >= target) {
+                return Math.min(upperBound(i), this.getMax());
+            }
+        }
+        return this.getMax();
+    }
+
+    private static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        // The position of the highest bit, and the bits right below it
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = index % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (1L << exponent) + (subBucket + 1) * width - 1;
+    }
+}
@@ -28,6 +28,8 @@ package com.xtra.core.config;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
@@ -39,15 +41,29 @@ import com.xtra.core.CoreImpl;
 import com.xtra.core.internal.Internals;
 import com.xtra.core.plugin.XtraCorePluginContainerImpl;
 import com.xtra.core.registry.ConfigRegistryImpl;
+import com.xtra.core.util.timing.StartupTimings.Timing;
 
 public class ConfigHandlerImpl implements ConfigHandler {
 
     private Set<Config> configs = new HashSet<>();
+    private Map<Class<?>, Config> configsByClass = new IdentityHashMap<>();
 
     private ConfigHandlerImpl() {
     }
 
     public static ConfigHandler create(XtraCorePluginContainer container) {
+        return new ConfigHandlerImpl().init(container).loadConfigs(container);
+    }
+
+    /**
+     * Creates the config handler and registers the configs, without loading
+     * them. {@link #loadConfigs} must be called afterwards, which may be done
+     * from another thread.
+     * 
+     * @param container The container
+     * @return The config handler
+     */
+    public static ConfigHandlerImpl prepare(XtraCorePluginContainer container) {
         return new ConfigHandlerImpl().init(container);
     }
 
@@ -57,13 +73,23 @@ public class ConfigHandlerImpl implements ConfigHandler {
         XtraCorePluginContainerImpl implContainer = (XtraCorePluginContainerImpl) container;
         this.configs = implContainer.scanner.getConfigs();
 
-        container.getLogger().info(Internals.LOG_HEADER);
-        container.getLogger().info("Initializing the configs!");
         implContainer.setConfigHandler(this);
         ConfigRegistryImpl implRegistry = (ConfigRegistryImpl) CoreImpl.instance.getConfigRegistry();
         for (Config config : this.configs) {
+            this.configsByClass.put(config.getClass(), config);
             implRegistry.add(config, container);
-            config.init();
+        }
+        return this;
+    }
+
+    public ConfigHandlerImpl loadConfigs(XtraCorePluginContainer container) {
+        container.getLogger().info(Internals.LOG_HEADER);
+        container.getLogger().info("Initializing the configs!");
+        for (Config config : this.configs) {
+            try (Timing timing = CoreImpl.instance.getStartupTimings().start(container,
+                    "config init '" + config.getClass().getAnnotation(RegisterConfig.class).configName() + "'")) {
+                config.init();
+            }
         }
         return this;
     }
@@ -71,6 +97,11 @@ public class ConfigHandlerImpl implements ConfigHandler {
     @Override
     public Optional<Config> getConfig(Class<? extends Config> clazz) {
         checkNotNull(clazz, "Config class cannot be null!");
+        Config exact = this.configsByClass.get(clazz);
+        if (exact != null) {
+            return Optional.of(exact);
+        }
+        // Not the class of a config, but possibly a supertype of one
         for (Config config : this.configs) {
             if (clazz.isInstance(config)) {
                 return Optional.of(config);
@@ -33,6 +33,7 @@ import org.slf4j.Logger;
 import com.xtra.api.command.Command;
 import com.xtra.api.config.Config;
 import com.xtra.api.plugin.XtraCorePluginContainer;
+import com.xtra.core.util.InstanceFactory;
 
 /**
  * This is an internal class for storing various information that should only
@@ -56,11 +57,9 @@ public class Internals {
      * @param clazz The class to check
      * @return The object if it has already been instantiated, otherwise a new
      *         instance of the specified class
-     * @throws IllegalAccessException
      * @throws InstantiationException
      */
-    public static Object checkIfAlreadyExists(XtraCorePluginContainer container, Class<?> clazz)
-            throws InstantiationException, IllegalAccessException {
+    public static Object checkIfAlreadyExists(XtraCorePluginContainer container, Class<?> clazz) throws InstantiationException {
         if (container.getCommandHandler().isPresent()) {
             for (Command command : container.getCommandHandler().get().getCommands()) {
                 if (clazz.equals(command.getClass())) {
@@ -75,6 +74,6 @@ public class Internals {
                 }
             }
         }
-        return clazz.newInstance();
+        return InstanceFactory.newInstance(clazz);
     }
 }
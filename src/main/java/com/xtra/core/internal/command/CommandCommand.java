@@ -25,6 +25,10 @@
 
 package com.xtra.core.internal.command;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
 import javax.annotation.Nullable;
 
 import org.spongepowered.api.command.CommandResult;
@@ -40,7 +44,13 @@ import com.xtra.api.command.Command;
 import com.xtra.api.command.annotation.RegisterCommand;
 import com.xtra.api.command.base.CommandBase;
 import com.xtra.core.CoreImpl;
+import com.xtra.core.command.annotation.CacheOutput;
+import com.xtra.core.command.cache.OutputCache;
+import com.xtra.core.command.completion.CommandPath;
+import com.xtra.core.command.completion.CommandPathElement;
+import com.xtra.core.registry.CommandRegistryImpl;
 
+@CacheOutput(arguments = "command", expireAfterSeconds = 300, dependsOnCommands = true)
 @RegisterCommand(childOf = XtraCoreCommand.class)
 public class CommandCommand extends CommandBase<CommandSource> {
 
@@ -61,7 +71,7 @@ public class CommandCommand extends CommandBase<CommandSource> {
 
     @Override
     public CommandElement[] args() {
-        return new CommandElement[] {GenericArguments.onlyOne(GenericArguments.remainingJoinedStrings(Text.of("command")))};
+        return new CommandElement[] {GenericArguments.onlyOne(new CommandPathElement(Text.of("command")))};
     }
 
     @Override
@@ -71,56 +81,45 @@ public class CommandCommand extends CommandBase<CommandSource> {
 
     @Override
     public CommandResult executeCommand(CommandSource src, CommandContext args) throws Exception {
-        // This one is interesting. The thing is, multiple child
-        // commands can have the same alias, as long as they have
-        // different parents. For example, this:
-        // /command1 help
-        // and
-        // /command2 help
-        // The two 'help' commands both share the same alias, but
-        // different parents allow both of them to co-exist in
-        // Sponge. To avoid collisions with the wrong command, we
-        // need both the child and parent command in the arguments
-        // and we have to match the parent command so that we do not
-        // accidentally hit a child command from another plugin.
         String command = args.<String>getOne("command").get();
-        for (Command command2 : CoreImpl.instance.getCommandRegistry().getAllCommands()) {
-            for (String alias : command2.aliases()) {
-                // If there is a space, assume user wants to specify
-                // a child command
-                if (command.contains(" ")) {
-                    // Split by the space
-                    String[] splitCommand = command.split(" ");
-                    // If too many spaces...not what we want
-                    if (splitCommand.length > 2) {
-                        src.sendMessage(Text.of(TextColors.RED, "Too many arguments!"));
-                    }
-                    String parentCommand = splitCommand[0];
-                    String childCommand = splitCommand[1];
-                    // Now we can check if the child command is the
-                    // alias.
-                    if (alias.equalsIgnoreCase(childCommand)) {
-                        Command parentCommand2 = CoreImpl.instance.getCommandRegistry()
-                                .getCommand(command2.getClass().getAnnotation(RegisterCommand.class).childOf()).get();
-                        for (String alias2 : parentCommand2.aliases()) {
-                            if (parentCommand.equalsIgnoreCase(alias2)) {
-                                sendCommandInfo(src, command2, parentCommand2);
-                                return CommandResult.success();
-                            }
-                        }
-                    }
-                } else if (alias.equalsIgnoreCase(command)) {
-                    // No space, assume not a child command
-                    sendCommandInfo(src, command2, null);
-                    return CommandResult.success();
+        // The info only changes when commands are added or removed, so it is
+        // cached
+        Optional<PaginationList> info = OutputCache.get(this, src, args, () -> createCommandInfo(command));
+        if (!info.isPresent()) {
+            src.sendMessage(Text.of(TextColors.RED, "Could not find command ", TextColors.BLUE, command, TextColors.RED, "!"));
+            List<CommandPath> corrections = ((CommandRegistryImpl) CoreImpl.instance.getCommandRegistry()).getCompletions().correct(src, command, 3);
+            if (!corrections.isEmpty()) {
+                List<String> paths = new ArrayList<>();
+                for (CommandPath path : corrections) {
+                    paths.add(path.getPath());
                 }
+                src.sendMessage(Text.of(TextColors.RED, "Did you mean: ", TextColors.BLUE, String.join(", ", paths), TextColors.RED, "?"));
             }
+            return CommandResult.empty();
+        }
+        info.get().sendTo(src);
+        return CommandResult.success();
+    }
+
+    private static Optional<PaginationList> createCommandInfo(String command) {
+        // Multiple child commands can share an alias, as long as they have
+        // different parents, like '/command1 help' and '/command2 help'. The
+        // full path, which is unique, is looked up first.
+        CommandRegistryImpl registry = (CommandRegistryImpl) CoreImpl.instance.getCommandRegistry();
+        CommandPath path = registry.getCompletionTrie().get(command);
+        Optional<Command> command2 = path != null ? Optional.of(path.getCommand()) : Optional.empty();
+        if (!command2.isPresent() && !command.contains(" ")) {
+            // Just the alias of a child command
+            command2 = registry.getCommand(command);
+        }
+        if (!command2.isPresent()) {
+            return Optional.empty();
         }
-        src.sendMessage(Text.of(TextColors.RED, "Could not find command ", TextColors.BLUE, command, TextColors.RED, "!"));
-        return CommandResult.empty();
+        Class<? extends Command> parent = command2.get().getClass().getAnnotation(RegisterCommand.class).childOf();
+        return Optional.of(buildCommandInfo(command2.get(), registry.getCommand(parent).orElse(null)));
     }
 
-    private static void sendCommandInfo(CommandSource source, Command command, @Nullable Command parentCommand) {
+    private static PaginationList buildCommandInfo(Command command, @Nullable Command parentCommand) {
         StringBuilder sb = new StringBuilder();
         // If the aliases are greater than one, do a for
         // loop
@@ -141,7 +140,7 @@ public class CommandCommand extends CommandBase<CommandSource> {
         String permission = command.permission() != null ? command.permission() : "None.";
         String description = command.description() != null ? command.description() : "None.";
         String usage = command.usage() != null ? command.usage() : "None.";
-        PaginationList.builder()
+        return PaginationList.builder()
                 .title(Text.of(TextColors.GREEN, command.aliases()[0]))
                 .padding(Text.of(TextColors.GOLD, "-="))
                 .contents(Text.of(TextColors.BLUE, "Aliases: ", TextColors.GREEN, sb.toString()),
@@ -152,6 +151,6 @@ public class CommandCommand extends CommandBase<CommandSource> {
                                 CoreImpl.instance.getCommandAnnotationHelper().isAsync(command.getClass()) ? "True." : "False."),
                         parentCommand != null ? Text.of(TextColors.BLUE, "Parent command: ", TextColors.GREEN, parentCommand.aliases()[0])
                                 : Text.of(TextColors.GREEN, "No parent command."))
-                .sendTo(source);
+                .build();
     }
 }
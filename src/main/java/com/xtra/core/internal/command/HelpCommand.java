@@ -29,11 +29,14 @@ import org.spongepowered.api.command.CommandResult;
 import org.spongepowered.api.command.CommandSource;
 import org.spongepowered.api.command.args.CommandContext;
 import org.spongepowered.api.command.args.CommandElement;
+import org.spongepowered.api.command.args.GenericArguments;
+import org.spongepowered.api.text.Text;
 
 import com.xtra.api.command.annotation.RegisterCommand;
 import com.xtra.api.command.base.CommandBase;
 import com.xtra.core.CoreImpl;
 import com.xtra.core.XtraCore;
+import com.xtra.core.text.HelpPaginationHandlerImpl;
 
 @RegisterCommand(childOf = XtraCoreCommand.class)
 public class HelpCommand extends CommandBase<CommandSource> {
@@ -55,17 +58,18 @@ public class HelpCommand extends CommandBase<CommandSource> {
 
     @Override
     public CommandElement[] args() {
-        return null;
+        return new CommandElement[] {GenericArguments.optional(GenericArguments.integer(Text.of("page")))};
     }
 
     @Override
     public String usage() {
-        return null;
+        return "[page]";
     }
 
     @Override
     public CommandResult executeCommand(CommandSource src, CommandContext args) throws Exception {
-        CoreImpl.instance.getHelpPaginationHandler(XtraCore.class).get().sendList(src);
+        HelpPaginationHandlerImpl handler = (HelpPaginationHandlerImpl) CoreImpl.instance.getHelpPaginationHandler(XtraCore.class).get();
+        handler.sendPage(src, args.<Integer>getOne("page").orElse(1), "/xtracore help");
         return CommandResult.success();
     }
 }
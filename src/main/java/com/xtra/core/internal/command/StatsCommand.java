@@ -0,0 +1,155 @@
+/**
+ * This file is part of XtraCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016 - 2016 XtraStudio <https://github.com/XtraStudio>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.xtra.core.internal.command;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.spongepowered.api.command.CommandResult;
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.command.args.CommandContext;
+import org.spongepowered.api.command.args.CommandElement;
+import org.spongepowered.api.command.args.GenericArguments;
+import org.spongepowered.api.service.pagination.PaginationList;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.format.TextColors;
+
+import com.xtra.api.command.Command;
+import com.xtra.api.command.annotation.RegisterCommand;
+import com.xtra.api.command.base.CommandBase;
+import com.xtra.core.CoreImpl;
+import com.xtra.core.command.async.AsyncCommandExecutor;
+import com.xtra.core.command.stats.CommandStats;
+import com.xtra.core.command.stats.CommandStats.Phase;
+import com.xtra.core.command.stats.LatencyHistogram;
+import com.xtra.core.plugin.XtraCorePluginContainerImpl;
+import com.xtra.core.registry.CommandRegistryImpl;
+
+@RegisterCommand(childOf = XtraCoreCommand.class)
+public class StatsCommand extends CommandBase<CommandSource> {
+
+    @Override
+    public String[] aliases() {
+        return new String[] {"stats", "s"};
+    }
+
+    @Override
+    public String permission() {
+        return "xtracore.stats";
+    }
+
+    @Override
+    public String description() {
+        return "Displays how often commands have been executed and how long they took.";
+    }
+
+    @Override
+    public CommandElement[] args() {
+        return new CommandElement[] {GenericArguments.optional(GenericArguments.string(Text.of("command")))};
+    }
+
+    @Override
+    public String usage() {
+        return "[command]";
+    }
+
+    @Override
+    public CommandResult executeCommand(CommandSource src, CommandContext args) throws Exception {
+        CommandRegistryImpl registry = (CommandRegistryImpl) CoreImpl.instance.getCommandRegistry();
+        Optional<String> alias = args.<String>getOne("command");
+        if (alias.isPresent()) {
+            Optional<Command> command = registry.getCommand(alias.get());
+            Optional<CommandStats> stats = command.isPresent() ? registry.getStats(command.get().getClass()) : Optional.empty();
+            if (!stats.isPresent()) {
+                src.sendMessage(Text.of(TextColors.RED, "Could not find command ", TextColors.BLUE, alias.get(), TextColors.RED, "!"));
+                return CommandResult.empty();
+            }
+            sendCommandStats(src, command.get(), stats.get());
+            return CommandResult.success();
+        }
+
+        // Most expensive commands first
+        List<Map.Entry<Command, CommandStats>> entries = new ArrayList<>(registry.getAllStats().entrySet());
+        entries.removeIf(entry -> entry.getValue().getInvocations() == 0);
+        entries.sort((entry1, entry2) -> Long.compare(totalTime(entry2.getValue()), totalTime(entry1.getValue())));
+        List<Text> contents = new ArrayList<>();
+        for (Map.Entry<Command, CommandStats> entry : entries) {
+            LatencyHistogram histogram = entry.getValue().getHistogram(Phase.COMMAND);
+            contents.add(Text.of(TextColors.GOLD, entry.getKey().aliases()[0], ": ", TextColors.GREEN, entry.getValue().getInvocations(), "x",
+                    TextColors.BLUE, " p50 ", TextColors.GREEN, toMillis(histogram.getPercentile(0.5)),
+                    TextColors.BLUE, " p99 ", TextColors.GREEN, toMillis(histogram.getPercentile(0.99)),
+                    TextColors.BLUE, " max ", TextColors.GREEN, toMillis(histogram.getMax())));
+        }
+        if (contents.isEmpty()) {
+            contents.add(Text.of(TextColors.GREEN, "No commands have been executed yet."));
+        }
+        PaginationList.builder()
+                .title(Text.of(TextColors.GREEN, "Command Stats"))
+                .padding(Text.of(TextColors.GOLD, "-="))
+                .contents(contents)
+                .sendTo(src);
+        return CommandResult.success();
+    }
+
+    private static void sendCommandStats(CommandSource source, Command command, CommandStats stats) {
+        List<Text> contents = new ArrayList<>();
+        contents.add(Text.of(TextColors.BLUE, "Invocations: ", TextColors.GREEN, stats.getInvocations()));
+        contents.add(Text.of(TextColors.BLUE, "Errors: ", TextColors.GREEN, stats.getErrors()));
+        for (Phase phase : Phase.values()) {
+            LatencyHistogram histogram = stats.getHistogram(phase);
+            contents.add(Text.of(TextColors.GOLD, phase.name(), ": ", TextColors.GREEN, histogram.getCount(), "x",
+                    TextColors.BLUE, " mean ", TextColors.GREEN, toMillis(histogram.getMean()),
+                    TextColors.BLUE, " p50 ", TextColors.GREEN, toMillis(histogram.getPercentile(0.5)),
+                    TextColors.BLUE, " p99 ", TextColors.GREEN, toMillis(histogram.getPercentile(0.99)),
+                    TextColors.BLUE, " max ", TextColors.GREEN, toMillis(histogram.getMax())));
+        }
+        XtraCorePluginContainerImpl container = (XtraCorePluginContainerImpl) CoreImpl.instance.getCommandRegistry()
+                .getEntry(command.getClass()).get().getValue();
+        Optional<AsyncCommandExecutor> executor = container.getAsyncExecutorIfCreated();
+        if (executor.isPresent()) {
+            contents.add(Text.of(TextColors.GOLD, "Async executor of ", container.getPluginContainer().getId(), ":"));
+            contents.add(Text.of(TextColors.BLUE, "  Active: ", TextColors.GREEN, executor.get().getActiveCount(),
+                    TextColors.BLUE, " Queued: ", TextColors.GREEN, executor.get().getQueueDepth(),
+                    TextColors.BLUE, " Rejected: ", TextColors.GREEN, executor.get().getRejectedCount()));
+        }
+        PaginationList.builder()
+                .title(Text.of(TextColors.GREEN, command.aliases()[0]))
+                .padding(Text.of(TextColors.GOLD, "-="))
+                .contents(contents)
+                .sendTo(source);
+    }
+
+    private static long totalTime(CommandStats stats) {
+        LatencyHistogram histogram = stats.getHistogram(Phase.COMMAND);
+        return histogram.getMean() * histogram.getCount();
+    }
+
+    private static String toMillis(long nanos) {
+        return String.format("%.2fms", nanos / 1000000.0);
+    }
+}
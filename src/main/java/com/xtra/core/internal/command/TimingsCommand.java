@@ -0,0 +1,96 @@
+/**
+ * This file is part of XtraCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016 - 2016 XtraStudio <https://github.com/XtraStudio>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.xtra.core.internal.command;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.spongepowered.api.command.CommandResult;
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.command.args.CommandContext;
+import org.spongepowered.api.command.args.CommandElement;
+import org.spongepowered.api.service.pagination.PaginationList;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.format.TextColors;
+
+import com.xtra.api.command.annotation.RegisterCommand;
+import com.xtra.api.command.base.CommandBase;
+import com.xtra.core.CoreImpl;
+
+@RegisterCommand(childOf = XtraCoreCommand.class)
+public class TimingsCommand extends CommandBase<CommandSource> {
+
+    @Override
+    public String[] aliases() {
+        return new String[] {"timings", "t"};
+    }
+
+    @Override
+    public String permission() {
+        return "xtracore.timings";
+    }
+
+    @Override
+    public String description() {
+        return "Displays how long each plugin took to start.";
+    }
+
+    @Override
+    public CommandElement[] args() {
+        return null;
+    }
+
+    @Override
+    public String usage() {
+        return null;
+    }
+
+    @Override
+    public CommandResult executeCommand(CommandSource src, CommandContext args) throws Exception {
+        List<Text> contents = new ArrayList<>();
+        for (Map.Entry<String, Map<String, Long>> plugin : CoreImpl.instance.getStartupTimings().getTimings().entrySet()) {
+            long total = 0;
+            for (long nanos : plugin.getValue().values()) {
+                total += nanos;
+            }
+            contents.add(Text.of(TextColors.GOLD, plugin.getKey(), ": ", TextColors.GREEN, toMillis(total)));
+            for (Map.Entry<String, Long> phase : plugin.getValue().entrySet()) {
+                contents.add(Text.of(TextColors.BLUE, "  ", phase.getKey(), ": ", TextColors.GREEN, toMillis(phase.getValue())));
+            }
+        }
+        PaginationList.builder()
+                .title(Text.of(TextColors.GREEN, "Startup Timings"))
+                .padding(Text.of(TextColors.GOLD, "-="))
+                .contents(contents)
+                .sendTo(src);
+        return CommandResult.success();
+    }
+
+    private static String toMillis(long nanos) {
+        return String.format("%.2fms", nanos / 1000000.0);
+    }
+}
@@ -25,18 +25,26 @@
 
 package com.xtra.core.internal.config;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 import com.xtra.api.command.Command;
-import com.xtra.api.command.annotation.RegisterCommand;
 import com.xtra.api.command.state.CommandState;
 import com.xtra.api.config.Config;
 import com.xtra.api.plugin.XtraCorePluginContainer;
-import com.xtra.api.util.command.EmptyCommand;
 import com.xtra.core.CoreImpl;
 import com.xtra.core.XtraCore;
+import com.xtra.core.command.CommandHandlerImpl;
+import com.xtra.core.command.async.AsyncCommandExecutor;
+import com.xtra.core.command.async.AsyncCommandExecutor.RejectionPolicy;
 import com.xtra.core.internal.Internals;
+import com.xtra.core.registry.CommandRegistryImpl;
+import com.xtra.core.util.CommandTree;
+import com.xtra.core.util.scan.ScanFilter;
 
 import ninja.leaping.configurate.commented.CommentedConfigurationNode;
 
@@ -47,35 +55,110 @@ public class ConfigChecker {
         // commands.
         Config commandConfig = CoreImpl.instance.getConfigHandler(XtraCore.class).get().getConfig(CommandsConfig.class).get();
         commandConfig.load();
+        Map<Class<? extends Command>, CommandState> states = new HashMap<>();
         for (Map.Entry<Command, XtraCorePluginContainer> entry : CoreImpl.instance.getCommandRegistry().getAllCommandMappings().entrySet()) {
-            // Get a potential parent command, as we will include that in the
-            // config option
-            Class<? extends Command> parentCommand = entry.getKey().getClass().getAnnotation(RegisterCommand.class).childOf();
-            // Default to empty string if no parent
-            String parentString = "";
+            // Include any parent commands in the config option, as in
+            // parent$child
+            CommandTree.Node treeNode = ((CommandHandlerImpl) entry.getValue().getCommandHandler().get()).getCommandTree()
+                    .get(entry.getKey().getClass());
+            String path = treeNode != null ? treeNode.getPath('$') : entry.getKey().aliases()[0];
 
-            if (!parentCommand.equals(EmptyCommand.class)) {
-                Optional<Command> optionalParent = CoreImpl.instance.getCommandRegistry().getCommand(parentCommand);
-                if (optionalParent.isPresent()) {
-                    parentString = optionalParent.get().aliases()[0] + "$";
-                }
-            }
-
-            CommentedConfigurationNode node = commandConfig.rootNode().getNode(entry.getValue().getPluginContainer().getId())
-                    .getNode(parentString + entry.getKey().aliases()[0]);
+            CommentedConfigurationNode node = commandConfig.rootNode().getNode(entry.getValue().getPluginContainer().getId()).getNode(path);
             if (node.isVirtual()) {
                 node.setValue("ENABLED");
             } else {
                 try {
-                    CommandState state = CommandState.valueOf(node.getString());
-                    entry.getValue().getCommandHandler().get().getCommandStateHandler().setState(entry.getKey().getClass(), state);
+                    states.put(entry.getKey().getClass(), CommandState.valueOf(node.getString()));
                 } catch (IllegalArgumentException e) {
                     Internals.globalLogger.warn("Config node '" + entry.getKey().aliases()[0]
                             + "' in the commands.conf file has been set to an unknown '" + node.getString() + "' value! Defaulting to enabled!");
-                    entry.getValue().getCommandHandler().get().getCommandStateHandler().setState(entry.getKey().getClass(), CommandState.ENABLED);
+                    states.put(entry.getKey().getClass(), CommandState.ENABLED);
                 }
             }
         }
+        ((CommandRegistryImpl) CoreImpl.instance.getCommandRegistry()).setStates(states);
         commandConfig.save();
     }
+
+    public static void pluginsConfig(Collection<? extends XtraCorePluginContainer> containers) {
+        // The plugins.conf file contains the per plugin settings, such as
+        // which packages should be scanned.
+        Config pluginsConfig = getPluginsConfig();
+        pluginsConfig.load();
+        for (XtraCorePluginContainer container : containers) {
+            CommentedConfigurationNode node = pluginsConfig.rootNode().getNode(container.getPluginContainer().getId());
+            if (node.getNode("scan", "include").isVirtual()) {
+                node.getNode("scan", "include").setValue(new ArrayList<String>());
+            }
+            if (node.getNode("scan", "exclude").isVirtual()) {
+                node.getNode("scan", "exclude").setValue(new ArrayList<String>());
+            }
+            if (node.getNode("lazy-commands").isVirtual()) {
+                node.getNode("lazy-commands").setValue(false);
+            }
+            CommentedConfigurationNode async = node.getNode("async");
+            if (async.getNode("pool-size").isVirtual()) {
+                async.getNode("pool-size").setValue(Math.max(2, Runtime.getRuntime().availableProcessors() / 2));
+            }
+            if (async.getNode("queue-capacity").isVirtual()) {
+                async.getNode("queue-capacity").setValue(256);
+            }
+            if (async.getNode("rejection-policy").isVirtual()) {
+                async.getNode("rejection-policy").setValue(RejectionPolicy.REJECT.name());
+            }
+            if (async.getNode("virtual-threads").isVirtual()) {
+                async.getNode("virtual-threads").setValue(false);
+            }
+            if (async.getNode("timeout-seconds").isVirtual()) {
+                async.getNode("timeout-seconds").setValue(60);
+            }
+            if (async.getNode("command-timeouts").isVirtual()) {
+                async.getNode("command-timeouts").setValue(new HashMap<String, Integer>());
+            }
+            if (node.getNode("help", "filter-by-permission").isVirtual()) {
+                node.getNode("help", "filter-by-permission").setValue(false);
+            }
+        }
+        pluginsConfig.save();
+    }
+
+    public static ScanFilter scanFilter(XtraCorePluginContainer container) {
+        CommentedConfigurationNode node = getPluginsConfig().rootNode().getNode(container.getPluginContainer().getId(), "scan");
+        List<String> includes = node.getNode("include").getList(Object::toString);
+        List<String> excludes = node.getNode("exclude").getList(Object::toString);
+        return new ScanFilter(includes, excludes);
+    }
+
+    public static boolean lazyCommands(XtraCorePluginContainer container) {
+        return getPluginsConfig().rootNode().getNode(container.getPluginContainer().getId(), "lazy-commands").getBoolean(false);
+    }
+
+    public static boolean helpFilterByPermission(XtraCorePluginContainer container) {
+        return getPluginsConfig().rootNode().getNode(container.getPluginContainer().getId(), "help", "filter-by-permission").getBoolean(false);
+    }
+
+    public static AsyncCommandExecutor asyncExecutor(XtraCorePluginContainer container) {
+        CommentedConfigurationNode node = getPluginsConfig().rootNode().getNode(container.getPluginContainer().getId(), "async");
+        int poolSize = Math.max(1, node.getNode("pool-size").getInt(2));
+        int queueCapacity = Math.max(1, node.getNode("queue-capacity").getInt(256));
+        RejectionPolicy policy = RejectionPolicy.REJECT;
+        try {
+            policy = RejectionPolicy.valueOf(node.getNode("rejection-policy").getString(RejectionPolicy.REJECT.name()));
+        } catch (IllegalArgumentException e) {
+            Internals.globalLogger.warn("Config node '" + container.getPluginContainer().getId()
+                    + ".async.rejection-policy' in the plugins.conf file has been set to an unknown '" + node.getNode("rejection-policy").getString()
+                    + "' value! Defaulting to REJECT!");
+        }
+        // Timeouts of specific commands, by primary alias
+        Map<String, Long> timeouts = new HashMap<>();
+        for (Map.Entry<Object, ? extends CommentedConfigurationNode> entry : node.getNode("command-timeouts").getChildrenMap().entrySet()) {
+            timeouts.put(entry.getKey().toString(), TimeUnit.SECONDS.toMillis(entry.getValue().getLong()));
+        }
+        return AsyncCommandExecutor.create(container, poolSize, queueCapacity, policy, node.getNode("virtual-threads").getBoolean(false),
+                TimeUnit.SECONDS.toMillis(node.getNode("timeout-seconds").getLong(60)), timeouts);
+    }
+
+    private static Config getPluginsConfig() {
+        return CoreImpl.instance.getConfigHandler(XtraCore.class).get().getConfig(PluginsConfig.class).get();
+    }
 }
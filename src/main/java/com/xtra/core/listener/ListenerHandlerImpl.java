@@ -35,8 +35,10 @@ import org.spongepowered.api.Sponge;
 
 import com.xtra.api.listener.ListenerHandler;
 import com.xtra.api.plugin.XtraCorePluginContainer;
+import com.xtra.core.CoreImpl;
 import com.xtra.core.internal.Internals;
 import com.xtra.core.plugin.XtraCorePluginContainerImpl;
+import com.xtra.core.util.timing.StartupTimings.Timing;
 
 public class ListenerHandlerImpl implements ListenerHandler {
 
@@ -44,7 +46,9 @@ public class ListenerHandlerImpl implements ListenerHandler {
     private Set<Method> listenerMethods = new HashSet<>();
 
     public ListenerHandlerImpl(XtraCorePluginContainer container) {
-        this.registerListeners((XtraCorePluginContainerImpl) container);
+        try (Timing timing = CoreImpl.instance.getStartupTimings().start(container, "listener registration")) {
+            this.registerListeners((XtraCorePluginContainerImpl) container);
+        }
     }
 
     public void registerListeners(XtraCorePluginContainerImpl container) {
@@ -68,7 +72,7 @@ public class ListenerHandlerImpl implements ListenerHandler {
                 Object o = Internals.checkIfAlreadyExists(container, listener.getKey());
                 this.listenerObjects.add(o);
                 Sponge.getEventManager().registerListeners(container.getPlugin(), o);
-            } catch (InstantiationException | IllegalAccessException e) {
+            } catch (InstantiationException e) {
                 container.getLogger().error("An error has occurred while attempting to instantiate the listeners!", e);
             }
         }
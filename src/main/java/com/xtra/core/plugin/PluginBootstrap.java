@@ -0,0 +1,179 @@
+/**
+ * This file is part of XtraCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016 - 2016 XtraStudio <https://github.com/XtraStudio>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.xtra.core.plugin;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import org.spongepowered.api.Sponge;
+
+import com.xtra.api.command.CommandHandler;
+import com.xtra.api.plugin.XtraCorePlugin;
+import com.xtra.api.plugin.XtraCorePluginContainer;
+import com.xtra.core.command.CommandHandlerImpl;
+import com.xtra.core.config.ConfigHandlerImpl;
+import com.xtra.core.event.XtraCoreCommandHandlerInitializedEventImpl;
+import com.xtra.core.event.XtraCoreConfigHandlerInitializedEventImpl;
+import com.xtra.core.event.XtraCoreListenerHandlerInitializedEventImpl;
+import com.xtra.core.event.XtraCorePluginInitializedEventImpl;
+import com.xtra.core.internal.Internals;
+import com.xtra.core.internal.config.ConfigChecker;
+import com.xtra.core.listener.ListenerHandlerImpl;
+import com.xtra.core.util.ReflectionScanner;
+import com.xtra.core.util.scan.ScanFilter;
+
+/**
+ * Initializes the XtraCore plugins. The work that does not touch Sponge, such
+ * as scanning, loading the plugin classes, instantiating the configs and
+ * loading the config files, is run in parallel. Registering with Sponge,
+ * posting events and creating the commands is always done on the calling
+ * thread, in the order the plugins were given.
+ *
+ * <p>For each plugin the phases depend on each other as follows: scanning,
+ * then class loading and config instantiation, then registering the configs,
+ * then loading the configs, then the command and listener handlers. The
+ * commands are only created by the command handler, so that they may use the
+ * plugin's configs.</p>
+ */
+public class PluginBootstrap {
+
+    private Map<XtraCorePluginContainerImpl, XtraCorePlugin> plugins;
+    private ForkJoinPool pool;
+
+    public PluginBootstrap(Map<XtraCorePluginContainerImpl, XtraCorePlugin> plugins) {
+        this.plugins = new LinkedHashMap<>(plugins);
+    }
+
+    public void run() {
+        this.pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            this.scan();
+            Map<XtraCorePluginContainerImpl, ConfigHandlerImpl> configHandlers = this.loadConfigs();
+            this.register(configHandlers);
+        } finally {
+            this.pool.shutdown();
+        }
+    }
+
+    private void scan() {
+        ConfigChecker.pluginsConfig(this.plugins.keySet());
+        Map<XtraCorePluginContainer, ScanFilter> filters = new HashMap<>();
+        for (XtraCorePluginContainerImpl container : this.plugins.keySet()) {
+            filters.put(container, ConfigChecker.scanFilter(container));
+        }
+        // Scan all of the plugins at once, so that each jar is only walked a
+        // single time.
+        Map<XtraCorePluginContainer, ReflectionScanner> scanners = ReflectionScanner.createAll(filters);
+
+        // Load the classes found for each plugin in parallel
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (Map.Entry<XtraCorePluginContainerImpl, XtraCorePlugin> entry : this.plugins.entrySet()) {
+            XtraCorePluginContainerImpl container = entry.getKey();
+            XtraCorePlugin annotation = entry.getValue();
+            ReflectionScanner scanner = scanners.get(container);
+            container.scanner = scanner;
+            tasks.add(this.pool.submit(() -> {
+                try {
+                    if (!annotation.disableConfigHandler()) {
+                        scanner.getConfigs();
+                    }
+                    if (!annotation.disableCommandHandler()) {
+                        scanner.loadCommandClasses();
+                    }
+                    if (!annotation.disableListenerHandler()) {
+                        scanner.getPluginListeners();
+                    }
+                } catch (Exception e) {
+                    container.getLogger().error("An exception has occurred while attempting to scan the plugin!", e);
+                }
+            }));
+        }
+        this.joinAll(tasks);
+    }
+
+    private Map<XtraCorePluginContainerImpl, ConfigHandlerImpl> loadConfigs() {
+        // Registering the configs is not thread safe, so this is done in
+        // order. Only the loading of the files themselves is parallel.
+        Map<XtraCorePluginContainerImpl, ConfigHandlerImpl> configHandlers = new LinkedHashMap<>();
+        for (Map.Entry<XtraCorePluginContainerImpl, XtraCorePlugin> entry : this.plugins.entrySet()) {
+            XtraCorePluginContainerImpl container = entry.getKey();
+            Internals.globalLogger.info(Internals.LOG_HEADER);
+            Internals.globalLogger.info("Initializing plugin class " + container.getPlugin().getClass().getName());
+            Sponge.getEventManager().post(new XtraCorePluginInitializedEventImpl(container));
+
+            if (!entry.getValue().disableConfigHandler()) {
+                configHandlers.put(container, ConfigHandlerImpl.prepare(container));
+            }
+        }
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (Map.Entry<XtraCorePluginContainerImpl, ConfigHandlerImpl> entry : configHandlers.entrySet()) {
+            tasks.add(this.pool.submit(() -> {
+                try {
+                    entry.getValue().loadConfigs(entry.getKey());
+                } catch (Exception e) {
+                    entry.getKey().getLogger().error("An exception has occurred while attempting to load the configs!", e);
+                }
+            }));
+        }
+        this.joinAll(tasks);
+        return configHandlers;
+    }
+
+    private void register(Map<XtraCorePluginContainerImpl, ConfigHandlerImpl> configHandlers) {
+        for (Map.Entry<XtraCorePluginContainerImpl, XtraCorePlugin> entry : this.plugins.entrySet()) {
+            XtraCorePluginContainerImpl container = entry.getKey();
+            XtraCorePlugin annotation = entry.getValue();
+
+            // Now initialize other XtraCore specific handlers, if they have
+            // not been disabled.
+            if (configHandlers.containsKey(container)) {
+                Sponge.getEventManager().post(new XtraCoreConfigHandlerInitializedEventImpl(container, configHandlers.get(container)));
+            }
+
+            if (!annotation.disableCommandHandler()) {
+                CommandHandler handler = CommandHandlerImpl.create(container);
+                Sponge.getEventManager().post(new XtraCoreCommandHandlerInitializedEventImpl(container, handler));
+            }
+
+            if (!annotation.disableListenerHandler()) {
+                ListenerHandlerImpl handler = new ListenerHandlerImpl(container);
+                Sponge.getEventManager().post(new XtraCoreListenerHandlerInitializedEventImpl(container, handler));
+            }
+        }
+    }
+
+    private void joinAll(List<ForkJoinTask<?>> tasks) {
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+    }
+}
@@ -25,15 +25,17 @@
 
 package com.xtra.core.plugin;
 
-import java.util.HashSet;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nullable;
 
 import org.slf4j.Logger;
 import org.spongepowered.api.plugin.PluginContainer;
 
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.Multimap;
+import com.google.common.collect.ImmutableListMultimap;
 import com.xtra.api.command.Command;
 import com.xtra.api.command.CommandHandler;
 import com.xtra.api.command.runnable.CommandRunnable;
@@ -41,15 +43,24 @@ import com.xtra.api.config.ConfigHandler;
 import com.xtra.api.listener.ListenerHandler;
 import com.xtra.api.plugin.XtraCorePluginContainer;
 import com.xtra.api.text.HelpPaginationHandler;
+import com.xtra.core.command.async.AsyncCommandExecutor;
+import com.xtra.core.command.ratelimit.RateLimiter;
+import com.xtra.core.command.runnable.CommandRunnablePipeline;
+import com.xtra.core.internal.config.ConfigChecker;
 import com.xtra.core.util.ReflectionScanner;
 import com.xtra.core.util.store.CommandStore;
 
 public class XtraCorePluginContainerImpl implements XtraCorePluginContainer {
 
     // Internals
-    public Set<CommandStore> commandStores = new HashSet<>();
-    public Multimap<Class<? extends Command>, CommandRunnable> commandRunnables = ArrayListMultimap.create();
+    public Set<CommandStore> commandStores = ConcurrentHashMap.newKeySet();
+    public Map<Class<? extends Command>, CommandStore> commandStoresByClass = new ConcurrentHashMap<>();
+    // Replaced on every change, see addRunnable and addRateLimiter
+    public volatile ImmutableListMultimap<Class<? extends Command>, CommandRunnable> commandRunnables = ImmutableListMultimap.of();
+    public volatile ImmutableListMultimap<Class<? extends Command>, RateLimiter> rateLimiters = ImmutableListMultimap.of();
+    public Map<Class<? extends Command>, CommandRunnablePipeline> runnablePipelines = new ConcurrentHashMap<>();
     public ReflectionScanner scanner;
+    private volatile AsyncCommandExecutor asyncExecutor;
     // API
     private Object plugin;
     private PluginContainer pluginContainer;
@@ -100,6 +111,119 @@ public class XtraCorePluginContainerImpl implements XtraCorePluginContainer {
         return this.helpPaginationHandler;
     }
 
+    /**
+     * Gets the executor for the async commands of this plugin, creating it
+     * from the plugins.conf settings on first use.
+     * 
+     * @return The async command executor
+     */
+    public AsyncCommandExecutor getAsyncExecutor() {
+        AsyncCommandExecutor executor = this.asyncExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = this.asyncExecutor;
+                if (executor == null) {
+                    executor = ConfigChecker.asyncExecutor(this);
+                    this.asyncExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    public Optional<AsyncCommandExecutor> getAsyncExecutorIfCreated() {
+        return Optional.ofNullable(this.asyncExecutor);
+    }
+
+    public void addCommandStore(CommandStore store) {
+        this.commandStores.add(store);
+        this.commandStoresByClass.put(store.command().getClass(), store);
+    }
+
+    public void removeCommandStore(CommandStore store) {
+        this.commandStores.remove(store);
+        this.commandStoresByClass.remove(store.command().getClass(), store);
+        this.invalidateRunnablePipeline(store.command().getClass());
+    }
+
+    @Nullable
+    public CommandStore getCommandStore(Class<? extends Command> clazz) {
+        return this.commandStoresByClass.get(clazz);
+    }
+
+    /**
+     * Gets the compiled runnable pipeline of the specified command, compiling
+     * it if the runnables of the command have changed since the last call.
+     * 
+     * @param clazz The command class
+     * @return The runnable pipeline
+     */
+    public CommandRunnablePipeline getRunnablePipeline(Class<? extends Command> clazz) {
+        return this.runnablePipelines.computeIfAbsent(clazz, key -> CommandRunnablePipeline.compile(this, key, this.commandRunnables.get(key),
+                this.rateLimiters.get(key)));
+    }
+
+    public void invalidateRunnablePipeline(Class<? extends Command> clazz) {
+        this.runnablePipelines.remove(clazz);
+    }
+
+    /**
+     * Adds the runnable to the specified commands. The runnables are copied
+     * and published at once, so commands executing on other threads never see
+     * them partially updated.
+     * 
+     * @param runnable The runnable
+     * @param classes The command classes
+     */
+    public synchronized void addRunnable(CommandRunnable runnable, Iterable<Class<? extends Command>> classes) {
+        ImmutableListMultimap.Builder<Class<? extends Command>, CommandRunnable> builder = ImmutableListMultimap.builder();
+        builder.putAll(this.commandRunnables);
+        for (Class<? extends Command> clazz : classes) {
+            builder.put(clazz, runnable);
+        }
+        this.commandRunnables = builder.build();
+        // Only after publishing, so a pipeline compiled in between is dropped
+        for (Class<? extends Command> clazz : classes) {
+            this.invalidateRunnablePipeline(clazz);
+        }
+    }
+
+    public synchronized void removeRunnables(Class<? extends Command> clazz) {
+        this.commandRunnables = without(this.commandRunnables, clazz);
+        this.invalidateRunnablePipeline(clazz);
+    }
+
+    public synchronized void addRateLimiter(RateLimiter limiter, Iterable<Class<? extends Command>> classes) {
+        ImmutableListMultimap.Builder<Class<? extends Command>, RateLimiter> builder = ImmutableListMultimap.builder();
+        builder.putAll(this.rateLimiters);
+        for (Class<? extends Command> clazz : classes) {
+            builder.put(clazz, limiter);
+        }
+        this.rateLimiters = builder.build();
+        for (Class<? extends Command> clazz : classes) {
+            this.invalidateRunnablePipeline(clazz);
+        }
+    }
+
+    public synchronized void removeRateLimiters(Class<? extends Command> clazz) {
+        this.rateLimiters = without(this.rateLimiters, clazz);
+        this.invalidateRunnablePipeline(clazz);
+    }
+
+    private static <V> ImmutableListMultimap<Class<? extends Command>, V> without(ImmutableListMultimap<Class<? extends Command>, V> multimap,
+            Class<? extends Command> clazz) {
+        if (!multimap.containsKey(clazz)) {
+            return multimap;
+        }
+        ImmutableListMultimap.Builder<Class<? extends Command>, V> builder = ImmutableListMultimap.builder();
+        for (Map.Entry<Class<? extends Command>, V> entry : multimap.entries()) {
+            if (entry.getKey() != clazz) {
+                builder.put(entry);
+            }
+        }
+        return builder.build();
+    }
+
     public void setLogger(Logger logger) {
         this.logger = logger;
     }
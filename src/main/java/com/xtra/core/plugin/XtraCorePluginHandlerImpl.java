@@ -28,9 +28,10 @@ package com.xtra.core.plugin;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
 
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.plugin.PluginContainer;
@@ -42,7 +43,9 @@ import com.xtra.core.internal.Internals;
 
 public class XtraCorePluginHandlerImpl implements XtraCorePluginHandler {
 
-    private Set<XtraCorePluginContainer> containers = new HashSet<>();
+    // Looked up on every call to the handler getters of the core. Copied on
+    // every change, so readers on any thread never need to lock
+    private volatile Map<Class<?>, XtraCorePluginContainer> containersByClass = Collections.emptyMap();
 
     public XtraCorePluginContainerImpl add(Object plugin) {
         Optional<PluginContainer> optional = Sponge.getPluginManager().fromInstance(plugin);
@@ -51,28 +54,26 @@ public class XtraCorePluginHandlerImpl implements XtraCorePluginHandler {
                     new XtraCoreException());
         }
         XtraCorePluginContainerImpl container = new XtraCorePluginContainerImpl(plugin, optional.get());
-        this.containers.add(container);
+        synchronized (this) {
+            Map<Class<?>, XtraCorePluginContainer> containersByClass = new IdentityHashMap<>(this.containersByClass);
+            containersByClass.put(plugin.getClass(), container);
+            this.containersByClass = Collections.unmodifiableMap(containersByClass);
+        }
         return container;
     }
 
     @Override
     public Optional<XtraCorePluginContainer> getContainer(Class<?> clazz) {
         checkNotNull(clazz, "Container class cannot be null!");
-        for (XtraCorePluginContainer container : this.containers) {
-            if (container.getPlugin().getClass().equals(clazz)) {
-                return Optional.of(container);
-            }
-        }
-        return Optional.empty();
+        return Optional.ofNullable(this.containersByClass.get(clazz));
     }
 
     @Override
     public XtraCorePluginContainer getContainerUnchecked(Class<?> clazz) {
         checkNotNull(clazz, "Container class cannot be null!");
-        for (XtraCorePluginContainer container : this.containers) {
-            if (container.getPlugin().getClass().equals(clazz)) {
-                return container;
-            }
+        XtraCorePluginContainer container = this.containersByClass.get(clazz);
+        if (container != null) {
+            return container;
         }
         Internals.globalLogger.error("Cannot find the plugin container for " + clazz.getName() + "! Did you pass the wrong class?",
                 new XtraCoreException());
@@ -81,6 +82,6 @@ public class XtraCorePluginHandlerImpl implements XtraCorePluginHandler {
 
     @Override
     public Collection<XtraCorePluginContainer> getContainers() {
-        return this.containers;
+        return this.containersByClass.values();
     }
 }
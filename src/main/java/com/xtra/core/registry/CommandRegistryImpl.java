@@ -27,84 +27,143 @@ package com.xtra.core.registry;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
 import com.xtra.api.command.Command;
+import com.xtra.api.command.annotation.RegisterCommand;
 import com.xtra.api.command.runnable.CommandRunnable;
 import com.xtra.api.command.state.CommandState;
 import com.xtra.api.plugin.XtraCorePluginContainer;
 import com.xtra.api.registry.CommandRegistry;
+import com.xtra.api.util.command.EmptyCommand;
+import com.xtra.core.command.completion.CommandCompletionProvider;
+import com.xtra.core.command.completion.CommandPath;
+import com.xtra.core.command.completion.CommandTrie;
+import com.xtra.core.command.state.CommandStateHandlerImpl;
+import com.xtra.core.command.stats.CommandStats;
 import com.xtra.core.internal.Internals;
 import com.xtra.core.plugin.XtraCorePluginContainerImpl;
-import com.xtra.core.util.CommandGetter;
+import com.xtra.core.util.CommandAliasIndex;
+import com.xtra.core.util.map.PersistentHashMap;
+import com.xtra.core.util.store.CommandStore;
 
 public class CommandRegistryImpl implements CommandRegistry {
 
-    private Map<Command, XtraCorePluginContainer> globalCommands = new HashMap<>();
+    // Replaced as a whole on every change, so readers on any thread always
+    // see a consistent registry without locking. Its maps are persistent, so a
+    // new snapshot only copies the paths to the changed commands.
+    private volatile Snapshot snapshot = new Snapshot(null);
+    private CommandCompletionProvider completions = new CommandCompletionProvider(this);
 
     public void add(Command command, XtraCorePluginContainerImpl container) {
-        Internals.globalLogger.info("Adding command '" + command.aliases()[0] + "' to the global command registry!");
-        this.globalCommands.put(command, container);
+        this.addAll(Collections.singletonMap(command, container));
+    }
+
+    /**
+     * Adds several commands at once. Readers see either none or all of them.
+     * 
+     * @param commands The commands, with the containers of their plugins
+     */
+    public synchronized void addAll(Map<Command, XtraCorePluginContainerImpl> commands) {
+        checkNotNull(commands, "Commands cannot be null!");
+        Snapshot next = new Snapshot(this.snapshot);
+        for (Map.Entry<Command, XtraCorePluginContainerImpl> entry : commands.entrySet()) {
+            Internals.globalLogger.info("Adding command '" + entry.getKey().aliases()[0] + "' to the global command registry!");
+            next.add(entry.getKey(), entry.getValue());
+        }
+        // Only once all commands are added, as parents may come after their
+        // children
+        for (Command command : commands.keySet()) {
+            next.addPaths(command);
+        }
+        this.snapshot = next;
+    }
+
+    public void remove(Command command) {
+        this.removeAll(Collections.singletonList(command));
+    }
+
+    /**
+     * Removes several commands at once. Readers see either all or none of
+     * them.
+     * 
+     * @param commands The commands
+     */
+    public synchronized void removeAll(Collection<Command> commands) {
+        checkNotNull(commands, "Commands cannot be null!");
+        Snapshot next = new Snapshot(this.snapshot);
+        for (Command command : commands) {
+            Internals.globalLogger.info("Removing command '" + command.aliases()[0] + "' from the global command registry!");
+            next.remove(command);
+        }
+        this.snapshot = next;
     }
 
     @Override
     public Optional<Command> getCommand(Class<? extends Command> clazz) {
         checkNotNull(clazz, "Command class cannot be null!");
-        for (Command command : this.globalCommands.keySet()) {
-            if (command.getClass().equals(clazz)) {
-                return Optional.of(command);
-            }
-        }
-        return Optional.empty();
+        Map.Entry<Command, XtraCorePluginContainer> entry = this.snapshot.entries.get(clazz);
+        return entry != null ? Optional.of(entry.getKey()) : Optional.empty();
     }
 
     @Override
     public Optional<Command> getCommand(String primaryAlias) {
-        Optional<Map.Entry<Command, XtraCorePluginContainer>> optionalEntry = CommandGetter.getEntry(primaryAlias, globalCommands);
-        if (optionalEntry.isPresent()) {
-            return Optional.of(optionalEntry.get().getKey());
-        }
-        return Optional.empty();
+        Map.Entry<Command, XtraCorePluginContainer> entry = this.snapshot.aliasIndex.get(primaryAlias);
+        return entry != null ? Optional.of(entry.getKey()) : Optional.empty();
     }
 
     @Override
     public Optional<Map.Entry<Command, XtraCorePluginContainer>> getEntry(Class<? extends Command> clazz) {
-        checkNotNull(clazz, "Command class caannot be null!");
-        for (Map.Entry<Command, XtraCorePluginContainer> entry : this.globalCommands.entrySet()) {
-            if (entry.getKey().getClass().equals(clazz)) {
-                return Optional.of(entry);
-            }
-        }
-        return Optional.empty();
+        checkNotNull(clazz, "Command class cannot be null!");
+        return Optional.ofNullable(this.snapshot.entries.get(clazz));
     }
 
     @Override
     public Optional<Map.Entry<Command, XtraCorePluginContainer>> getEntry(String primaryAlias) {
-        return CommandGetter.getEntry(primaryAlias, globalCommands);
+        return Optional.ofNullable(this.snapshot.aliasIndex.get(primaryAlias));
+    }
+
+    /**
+     * Gets the trie of the paths of all registered commands, such as
+     * {@code xtracore command}.
+     * 
+     * @return The trie
+     */
+    public CommandTrie getCompletionTrie() {
+        return this.snapshot.trie;
+    }
+
+    public CommandCompletionProvider getCompletions() {
+        return this.completions;
     }
 
     @Override
     public Set<Command> getAllCommands() {
-        return this.globalCommands.keySet();
+        return Collections.unmodifiableSet(this.snapshot.commands.asMap().keySet());
     }
 
     @Override
     public Map<Command, XtraCorePluginContainer> getAllCommandMappings() {
-        return this.globalCommands;
+        return this.snapshot.commands.asMap();
     }
 
     @SuppressWarnings("unchecked")
     @Override
     public void addRunnables(CommandRunnable runnable, Class<? extends Command>... classes) {
         checkNotNull(runnable, "Command runnable cannot be null!");
+        Snapshot snapshot = this.snapshot;
         for (Class<? extends Command> clazz : classes) {
-            for (Map.Entry<Command, XtraCorePluginContainer> entry : this.globalCommands.entrySet()) {
-                if (entry.getKey().getClass().equals(clazz)) {
-                    entry.getValue().getCommandHandler().get().getCommandRunnableHandler().add(runnable, classes);
-                }
+            XtraCorePluginContainerImpl container = snapshot.containers.get(clazz);
+            if (container != null) {
+                container.getCommandHandler().get().getCommandRunnableHandler().add(runnable, clazz);
             }
         }
     }
@@ -112,21 +171,16 @@ public class CommandRegistryImpl implements CommandRegistry {
     @Override
     public boolean doesCommandHaveRunnable(Class<? extends Command> clazz) {
         checkNotNull(clazz, "Command class cannot be null!");
-        for (Map.Entry<Command, XtraCorePluginContainer> entry : this.globalCommands.entrySet()) {
-            if (entry.getKey().getClass().equals(clazz)) {
-                return entry.getValue().getCommandHandler().get().getCommandRunnableHandler().doesCommandHaveRunnable(clazz);
-            }
-        }
-        return false;
+        XtraCorePluginContainerImpl container = this.snapshot.containers.get(clazz);
+        return container != null && container.getCommandHandler().get().getCommandRunnableHandler().doesCommandHaveRunnable(clazz);
     }
 
     @Override
     public void removeRunnables(Class<? extends Command> clazz) {
         checkNotNull(clazz, "Command class cannot be null!");
-        for (Map.Entry<Command, XtraCorePluginContainer> entry : this.globalCommands.entrySet()) {
-            if (entry.getKey().getClass().equals(clazz)) {
-                entry.getValue().getCommandHandler().get().getCommandRunnableHandler().removeRunnables(clazz);
-            }
+        XtraCorePluginContainerImpl container = this.snapshot.containers.get(clazz);
+        if (container != null) {
+            container.getCommandHandler().get().getCommandRunnableHandler().removeRunnables(clazz);
         }
     }
 
@@ -134,21 +188,163 @@ public class CommandRegistryImpl implements CommandRegistry {
     public void setState(Class<? extends Command> clazz, CommandState state) {
         checkNotNull(clazz, "Command class cannot be null!");
         checkNotNull(state, "Command state cannot be null!");
-        for (Map.Entry<Command, XtraCorePluginContainer> entry : this.globalCommands.entrySet()) {
-            if (entry.getKey().getClass().equals(clazz)) {
-                entry.getValue().getCommandHandler().get().getCommandStateHandler().setState(clazz, state);
+        XtraCorePluginContainerImpl container = this.snapshot.containers.get(clazz);
+        if (container != null) {
+            container.getCommandHandler().get().getCommandStateHandler().setState(clazz, state);
+        }
+    }
+
+    /**
+     * Sets the states of several commands at once, across all plugins.
+     * 
+     * @param states The new states, by command class
+     */
+    public void setStates(Map<Class<? extends Command>, CommandState> states) {
+        checkNotNull(states, "Command states cannot be null!");
+        Snapshot snapshot = this.snapshot;
+        // Group the states by plugin, so that each state handler is only
+        // called once
+        Map<XtraCorePluginContainerImpl, Map<Class<? extends Command>, CommandState>> byContainer = new HashMap<>();
+        for (Map.Entry<Class<? extends Command>, CommandState> entry : states.entrySet()) {
+            XtraCorePluginContainerImpl container = snapshot.containers.get(entry.getKey());
+            if (container != null) {
+                byContainer.computeIfAbsent(container, key -> new HashMap<>()).put(entry.getKey(), entry.getValue());
+            }
+        }
+        for (Map.Entry<XtraCorePluginContainerImpl, Map<Class<? extends Command>, CommandState>> entry : byContainer.entrySet()) {
+            ((CommandStateHandlerImpl) entry.getKey().getCommandHandler().get().getCommandStateHandler()).setStates(entry.getValue());
+        }
+    }
+
+    /**
+     * Gets the execution statistics of the specified command.
+     * 
+     * @param clazz The command class
+     * @return The statistics, if the command is registered
+     */
+    public Optional<CommandStats> getStats(Class<? extends Command> clazz) {
+        checkNotNull(clazz, "Command class cannot be null!");
+        XtraCorePluginContainerImpl container = this.snapshot.containers.get(clazz);
+        if (container != null) {
+            CommandStore store = container.getCommandStore(clazz);
+            if (store != null) {
+                return Optional.of(store.stats());
             }
         }
+        return Optional.empty();
+    }
+
+    /**
+     * Gets the execution statistics of every registered command.
+     * 
+     * @return The statistics, by command
+     */
+    public Map<Command, CommandStats> getAllStats() {
+        Map<Command, CommandStats> stats = new HashMap<>();
+        for (Command command : this.snapshot.commands.asMap().keySet()) {
+            Optional<CommandStats> commandStats = this.getStats(command.getClass());
+            if (commandStats.isPresent()) {
+                stats.put(command, commandStats.get());
+            }
+        }
+        return stats;
     }
 
     @Override
     public Optional<CommandState> getState(Class<? extends Command> clazz) {
         checkNotNull(clazz, "Command class cannot be null!");
-        for (Map.Entry<Command, XtraCorePluginContainer> entry : this.globalCommands.entrySet()) {
-            if (entry.getKey().getClass().equals(clazz)) {
-                return Optional.of(entry.getValue().getCommandHandler().get().getCommandStateHandler().getState(clazz).get());
-            }
+        XtraCorePluginContainerImpl container = this.snapshot.containers.get(clazz);
+        if (container != null) {
+            return container.getCommandHandler().get().getCommandStateHandler().getState(clazz);
         }
         return Optional.empty();
     }
+
+    /**
+     * The commands and their indexes at one point in time. A snapshot is only
+     * modified while it is being created, and never after it is published.
+     * Creating a snapshot from the previous one shares all of its maps, which
+     * are never modified either.
+     */
+    private static class Snapshot {
+
+        private PersistentHashMap<Command, XtraCorePluginContainer> commands;
+        private PersistentHashMap<Class<?>, Map.Entry<Command, XtraCorePluginContainer>> entries;
+        private PersistentHashMap<Class<?>, XtraCorePluginContainerImpl> containers;
+        private final CommandAliasIndex aliasIndex;
+        private PersistentHashMap<Command, List<CommandPath>> paths;
+        private CommandTrie trie;
+
+        private Snapshot(Snapshot previous) {
+            if (previous == null) {
+                this.commands = PersistentHashMap.empty();
+                this.entries = PersistentHashMap.empty();
+                this.containers = PersistentHashMap.empty();
+                this.aliasIndex = new CommandAliasIndex();
+                this.paths = PersistentHashMap.empty();
+                this.trie = CommandTrie.EMPTY;
+            } else {
+                this.commands = previous.commands;
+                this.entries = previous.entries;
+                this.containers = previous.containers;
+                this.aliasIndex = new CommandAliasIndex(previous.aliasIndex);
+                this.paths = previous.paths;
+                this.trie = previous.trie;
+            }
+        }
+
+        private void add(Command command, XtraCorePluginContainerImpl container) {
+            this.commands = this.commands.with(command, container);
+            this.entries = this.entries.with(command.getClass(), new AbstractMap.SimpleImmutableEntry<>(command, container));
+            this.containers = this.containers.with(command.getClass(), container);
+            this.aliasIndex.add(command, container);
+        }
+
+        private void remove(Command command) {
+            this.commands = this.commands.without(command);
+            this.entries = this.entries.without(command.getClass());
+            this.containers = this.containers.without(command.getClass());
+            this.aliasIndex.remove(command);
+            List<CommandPath> commandPaths = this.paths.get(command);
+            this.paths = this.paths.without(command);
+            if (commandPaths != null) {
+                for (CommandPath path : commandPaths) {
+                    // Unless another command has taken over the path
+                    if (this.trie.get(path.getPath()) == path) {
+                        this.trie = this.trie.without(path.getPath());
+                    }
+                }
+            }
+        }
+
+        private List<CommandPath> addPaths(Command command) {
+            List<CommandPath> commandPaths = this.paths.get(command);
+            if (commandPaths != null) {
+                return commandPaths;
+            }
+            commandPaths = new ArrayList<>();
+            Class<? extends Command> parentClass = command.getClass().getAnnotation(RegisterCommand.class).childOf();
+            if (parentClass.equals(EmptyCommand.class)) {
+                for (String alias : command.aliases()) {
+                    commandPaths.add(CommandPath.root(alias, command));
+                }
+            } else {
+                // The parent may be specified by a supertype of the command
+                Command parent = this.aliasIndex.getParent(command);
+                // Child commands without a registered parent cannot be run
+                if (parent != null) {
+                    for (CommandPath parentPath : this.addPaths(parent)) {
+                        for (String alias : command.aliases()) {
+                            commandPaths.add(parentPath.child(alias, command));
+                        }
+                    }
+                }
+            }
+            for (CommandPath path : commandPaths) {
+                this.trie = this.trie.with(path);
+            }
+            this.paths = this.paths.with(command, commandPaths);
+            return commandPaths;
+        }
+    }
 }
@@ -27,7 +27,10 @@ package com.xtra.core.registry;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.AbstractMap;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
@@ -40,29 +43,31 @@ import com.xtra.core.internal.Internals;
 
 public class ConfigRegistryImpl implements ConfigRegistry {
 
-    private Map<Config, XtraCorePluginContainer> globalConfigs = new HashMap<>();
+    // Both maps are copied on every change and published together, so
+    // readers on any thread see a consistent registry without locking
+    private volatile Snapshot snapshot = new Snapshot(Collections.emptyMap(), Collections.emptyMap());
 
-    public void add(Config config, XtraCorePluginContainer container) {
+    public synchronized void add(Config config, XtraCorePluginContainer container) {
         Internals.globalLogger
                 .info("Adding config '" + config.getClass().getAnnotation(RegisterConfig.class).configName() + "' to the global config registry!");
-        this.globalConfigs.put(config, container);
+        Map<Config, XtraCorePluginContainer> globalConfigs = new HashMap<>(this.snapshot.globalConfigs);
+        Map<Class<?>, Map.Entry<Config, XtraCorePluginContainer>> entries = new IdentityHashMap<>(this.snapshot.entries);
+        globalConfigs.put(config, container);
+        entries.put(config.getClass(), new AbstractMap.SimpleImmutableEntry<>(config, container));
+        this.snapshot = new Snapshot(Collections.unmodifiableMap(globalConfigs), Collections.unmodifiableMap(entries));
     }
 
     @Override
     public Optional<Config> getConfig(Class<? extends Config> clazz) {
         checkNotNull(clazz, "Config class cannot be null!");
-        for (Config config : this.globalConfigs.keySet()) {
-            if (config.getClass().equals(clazz)) {
-                return Optional.of(config);
-            }
-        }
-        return Optional.empty();
+        Map.Entry<Config, XtraCorePluginContainer> entry = this.snapshot.entries.get(clazz);
+        return entry != null ? Optional.of(entry.getKey()) : Optional.empty();
     }
 
     @Override
     public Optional<Config> getConfig(String configName) {
         checkNotNull(configName, "Config name cannot be null!");
-        for (Config config : this.globalConfigs.keySet()) {
+        for (Config config : this.snapshot.globalConfigs.keySet()) {
             if (config.getClass().getAnnotation(RegisterConfig.class).configName().equals(configName)) {
                 return Optional.of(config);
             }
@@ -73,18 +78,13 @@ public class ConfigRegistryImpl implements ConfigRegistry {
     @Override
     public Optional<Map.Entry<Config, XtraCorePluginContainer>> getEntry(Class<? extends Config> clazz) {
         checkNotNull(clazz, "Config class cannot be null!");
-        for (Map.Entry<Config, XtraCorePluginContainer> entry : this.globalConfigs.entrySet()) {
-            if (entry.getKey().getClass().equals(clazz)) {
-                return Optional.of(entry);
-            }
-        }
-        return Optional.empty();
+        return Optional.ofNullable(this.snapshot.entries.get(clazz));
     }
 
     @Override
     public Optional<Map.Entry<Config, XtraCorePluginContainer>> getEntry(String configName) {
         checkNotNull(configName, "Config name cannot be null!");
-        for (Map.Entry<Config, XtraCorePluginContainer> entry : this.globalConfigs.entrySet()) {
+        for (Map.Entry<Config, XtraCorePluginContainer> entry : this.snapshot.globalConfigs.entrySet()) {
             if (entry.getKey().getClass().getAnnotation(RegisterConfig.class).configName().equals(configName)) {
                 return Optional.of(entry);
             }
@@ -94,11 +94,22 @@ public class ConfigRegistryImpl implements ConfigRegistry {
 
     @Override
     public Set<Config> getAllConfigs() {
-        return this.globalConfigs.keySet();
+        return this.snapshot.globalConfigs.keySet();
     }
 
     @Override
     public Map<Config, XtraCorePluginContainer> getAllConfigMappings() {
-        return this.globalConfigs;
+        return this.snapshot.globalConfigs;
+    }
+
+    private static class Snapshot {
+
+        private final Map<Config, XtraCorePluginContainer> globalConfigs;
+        private final Map<Class<?>, Map.Entry<Config, XtraCorePluginContainer>> entries;
+
+        private Snapshot(Map<Config, XtraCorePluginContainer> globalConfigs, Map<Class<?>, Map.Entry<Config, XtraCorePluginContainer>> entries) {
+            this.globalConfigs = globalConfigs;
+            this.entries = entries;
+        }
     }
 }
@@ -25,27 +25,52 @@
 
 package com.xtra.core.text;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
 
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.service.pagination.PaginationList;
+import org.spongepowered.api.service.permission.Subject;
 import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.action.TextActions;
 import org.spongepowered.api.text.channel.MessageReceiver;
 import org.spongepowered.api.text.format.TextColor;
 import org.spongepowered.api.text.format.TextColors;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.xtra.api.command.Command;
+import com.xtra.api.command.annotation.RegisterCommand;
+import com.xtra.api.command.state.CommandState;
 import com.xtra.api.text.ContentEntry;
 import com.xtra.api.text.HelpPaginationHandler;
+import com.xtra.api.util.command.EmptyCommand;
 import com.xtra.core.CoreImpl;
+import com.xtra.core.command.CommandHandlerImpl;
 import com.xtra.core.event.XtraCoreHelpPaginationHandlerInitializedEventImpl;
 import com.xtra.core.internal.Internals;
+import com.xtra.core.internal.config.ConfigChecker;
 import com.xtra.core.plugin.XtraCorePluginContainerImpl;
-import com.xtra.core.util.CommandHelper;
+import com.xtra.core.util.CommandTree;
 import com.xtra.core.util.store.CommandStore;
+import com.xtra.core.util.timing.StartupTimings.Timing;
 
 /**
  * A base class for creating {@link PaginationList}s for the commands of the
@@ -54,28 +79,179 @@ import com.xtra.core.util.store.CommandStore;
  */
 public class HelpPaginationHandlerImpl implements HelpPaginationHandler {
 
+    private static final int PAGE_SIZE = 10;
+
     private XtraCorePluginContainerImpl container;
-    private CommandHelper helper;
     private PaginationList.Builder paginationBuilder;
     private Text title;
     private Text padding;
-    private List<ContentEntry> contents;
     private List<Class<? extends Command>> ignoredCommands = new ArrayList<>();
     private TextColor commandColor;
     private TextColor descriptionColor;
     private ChildBehavior childBehavior;
     private CommandOrdering commandOrdering;
+    // The shown commands, sorted by the command ordering. Kept up to date as
+    // commands are registered or unregistered and their states change.
+    private NavigableSet<HelpEntry> entries;
+    private Map<Class<? extends Command>, HelpEntry> entriesByClass = new HashMap<>();
+    private long nextSequence;
+    // Rendered from the entries when first needed after a change, so that a
+    // change never renders every command, and neither does sending a page.
+    private List<ContentEntry> contents;
+    private PaginationList list;
+    private boolean builderStale = true;
+    // Subjects holding the same of the permissions required by the shown
+    // commands share a group, and the list of that group
+    private boolean filterByPermission;
+    private Map<String, Integer> permissionIndexes = new HashMap<>();
+    private Cache<String, BitSet> groupsBySubject = CacheBuilder.newBuilder()
+            .expireAfterWrite(30, TimeUnit.SECONDS)
+            .maximumSize(4096)
+            .build();
+    private Cache<BitSet, PaginationList> listsByGroup = CacheBuilder.newBuilder()
+            .expireAfterAccess(10, TimeUnit.MINUTES)
+            .maximumSize(256)
+            .build();
     // For the builder
     private HelpPaginationHandlerImpl instance;
 
     @Override
-    public PaginationList getList() {
-        return this.paginationBuilder.build();
+    public synchronized PaginationList getList() {
+        if (this.list == null) {
+            this.fillBuilder();
+            this.list = this.paginationBuilder.build();
+        }
+        return this.list;
+    }
+
+    private void fillBuilder() {
+        if (this.builderStale) {
+            List<Text> textContents = new ArrayList<>(this.entries.size());
+            for (HelpEntry entry : this.entries) {
+                textContents.add(this.render(entry));
+            }
+            this.paginationBuilder.contents(textContents);
+            this.builderStale = false;
+        }
+    }
+
+    /**
+     * Gets the list of the commands the subject has the permissions for.
+     * Subjects are grouped by which of the permissions of the shown commands
+     * they hold, and each group shares one list. The group of a subject is
+     * dropped when it joins or leaves, or a permission command is executed,
+     * and is otherwise kept for at most 30 seconds.
+     *
+     * @param subject The subject
+     * @return The list
+     */
+    public synchronized PaginationList getList(Subject subject) {
+        checkNotNull(subject, "Subject cannot be null!");
+        BitSet group = this.getGroup(subject);
+        PaginationList list = this.listsByGroup.getIfPresent(group);
+        if (list == null) {
+            List<Text> textContents = new ArrayList<>();
+            for (HelpEntry entry : this.entries) {
+                if (entry.isPermitted(group)) {
+                    textContents.add(this.render(entry));
+                }
+            }
+            // Copies the title, header and padding without changing the
+            // shared builder
+            list = PaginationList.builder().from(this.getList()).contents(textContents).build();
+            this.listsByGroup.put(group, list);
+        }
+        return list;
+    }
+
+    /**
+     * Drops the permission group of the specified subject, after its
+     * permissions may have changed.
+     *
+     * @param identifier The identifier of the subject
+     */
+    public void invalidateGroup(String identifier) {
+        this.groupsBySubject.invalidate(identifier);
+    }
+
+    /**
+     * Drops the permission groups of all subjects.
+     */
+    public void invalidateGroups() {
+        this.groupsBySubject.invalidateAll();
+    }
+
+    private BitSet getGroup(Subject subject) {
+        BitSet group = this.groupsBySubject.getIfPresent(subject.getIdentifier());
+        if (group == null) {
+            group = new BitSet(this.permissionIndexes.size());
+            for (Map.Entry<String, Integer> permission : this.permissionIndexes.entrySet()) {
+                if (subject.hasPermission(permission.getKey())) {
+                    group.set(permission.getValue());
+                }
+            }
+            this.groupsBySubject.put(subject.getIdentifier(), group);
+        }
+        return group;
+    }
+
+    /**
+     * Sends a single page of the list. Only the commands on the page are
+     * rendered, and the full list is never created, which keeps sending
+     * help cheap for plugins with hundreds of commands.
+     *
+     * @param receiver The receiver
+     * @param page The page, starting at 1
+     * @param pageCommand The command sending a page, such as
+     *        {@code /xtracore help}, for the links to the other pages, or null
+     *        for no links
+     */
+    public void sendPage(MessageReceiver receiver, int page, @Nullable String pageCommand) {
+        checkNotNull(receiver, "Message receiver cannot be null!");
+        List<Text> lines = new ArrayList<>(PAGE_SIZE + 2);
+        synchronized (this) {
+            BitSet group = this.filterByPermission && receiver instanceof Subject ? this.getGroup((Subject) receiver) : null;
+            int first = (Math.max(1, page) - 1) * PAGE_SIZE;
+            // Counting the commands does not render them
+            int count = 0;
+            lines.add(Text.of(this.padding, " ", this.title, " ", this.padding));
+            for (HelpEntry entry : this.entries) {
+                if (group != null && !entry.isPermitted(group)) {
+                    continue;
+                }
+                if (count >= first && count < first + PAGE_SIZE) {
+                    lines.add(this.render(entry));
+                }
+                count++;
+            }
+            int pages = Math.max(1, (count + PAGE_SIZE - 1) / PAGE_SIZE);
+            if (lines.size() == 1) {
+                lines.add(Text.of(TextColors.RED, "There is no page ", page, "!"));
+            }
+            lines.add(this.createPageFooter(Math.min(Math.max(1, page), pages), pages, pageCommand));
+        }
+        receiver.sendMessages(lines);
+    }
+
+    private Text createPageFooter(int page, int pages, @Nullable String pageCommand) {
+        Text.Builder footer = Text.builder().append(this.padding, Text.of(" "));
+        if (pageCommand != null && page > 1) {
+            footer.append(Text.builder("\u00AB ").color(TextColors.BLUE).onClick(TextActions.runCommand(pageCommand + " " + (page - 1))).build());
+        }
+        footer.append(Text.of(TextColors.GREEN, "Page ", page, " of ", pages));
+        if (pageCommand != null && page < pages) {
+            footer.append(Text.builder(" \u00BB").color(TextColors.BLUE).onClick(TextActions.runCommand(pageCommand + " " + (page + 1))).build());
+        }
+        return footer.append(Text.of(" "), this.padding).build();
     }
 
     @Override
     public void sendList(MessageReceiver receiver) {
-        this.paginationBuilder.sendTo(receiver);
+        if (this.filterByPermission && receiver instanceof Subject) {
+            this.getList((Subject) receiver).sendTo(receiver);
+        } else {
+            this.getList().sendTo(receiver);
+        }
     }
 
     @Override
@@ -94,18 +270,188 @@ public class HelpPaginationHandlerImpl implements HelpPaginationHandler {
     }
 
     @Override
-    public List<ContentEntry> getContents() {
+    public synchronized List<ContentEntry> getContents() {
+        if (this.contents == null) {
+            List<ContentEntry> contents = new ArrayList<>(this.entries.size());
+            for (HelpEntry entry : this.entries) {
+                contents.add(this.createContentEntry(entry.command, entry.path));
+            }
+            this.contents = Collections.unmodifiableList(contents);
+        }
         return this.contents;
     }
 
     @Override
-    public PaginationList.Builder getPaginationBuilder() {
+    public synchronized PaginationList.Builder getPaginationBuilder() {
+        this.fillBuilder();
+        // The builder may be changed by the caller
+        this.list = null;
+        this.listsByGroup.invalidateAll();
         return this.paginationBuilder;
     }
 
+    /**
+     * Updates the entry of the specified command after it has been registered
+     * or unregistered, or its state has changed. The entry of its parent
+     * command is updated as well, as it may depend on the child commands.
+     *
+     * @param clazz The command class
+     */
+    public synchronized void update(Class<? extends Command> clazz) {
+        checkNotNull(clazz, "Command class cannot be null!");
+        this.update(Collections.singleton(clazz));
+    }
+
+    /**
+     * Updates the entries of the specified commands and their parent
+     * commands, and invalidates the lists only once.
+     *
+     * @param classes The command classes
+     * @see #update(Class)
+     */
+    public synchronized void update(Collection<Class<? extends Command>> classes) {
+        checkNotNull(classes, "Command classes cannot be null!");
+        if (classes.isEmpty()) {
+            return;
+        }
+        Set<Class<? extends Command>> toUpdate = new LinkedHashSet<>(classes);
+        for (Class<? extends Command> clazz : classes) {
+            Class<? extends Command> parentClass = clazz.getAnnotation(RegisterCommand.class).childOf();
+            if (!parentClass.equals(EmptyCommand.class)) {
+                Optional<Command> parent = this.container.getCommandHandler().get().getCommand(parentClass);
+                if (parent.isPresent()) {
+                    toUpdate.add(parent.get().getClass());
+                }
+            }
+        }
+        for (Class<? extends Command> clazz : toUpdate) {
+            this.updateEntry(clazz);
+        }
+        this.invalidateLists();
+    }
+
+    private void invalidateLists() {
+        this.contents = null;
+        this.list = null;
+        this.builderStale = true;
+        this.listsByGroup.invalidateAll();
+    }
+
+    private void updateEntry(Class<? extends Command> clazz) {
+        HelpEntry oldEntry = this.entriesByClass.remove(clazz);
+        if (oldEntry != null) {
+            this.entries.remove(oldEntry);
+        }
+        CommandStore store = this.container.getCommandStore(clazz);
+        if (store == null || store.state() != CommandState.ENABLED || this.ignoredCommands.contains(clazz)) {
+            return;
+        }
+        CommandTree.Node node = ((CommandHandlerImpl) this.container.getCommandHandler().get()).getCommandTree().get(clazz);
+        boolean parent = node != null && !node.getChildren().isEmpty();
+        boolean child = node != null && node.getParent() != null;
+        if ((this.childBehavior.equals(ChildBehavior.IGNORE_PARENT) && parent) || (this.childBehavior.equals(ChildBehavior.IGNORE_CHILD) && child)) {
+            return;
+        }
+        // The full path, including all parent commands
+        String path = node != null ? node.getPath() : store.command().aliases()[0];
+        // Commands keep their place in the default ordering
+        long sequence = oldEntry != null ? oldEntry.sequence : this.nextSequence++;
+        HelpEntry entry = new HelpEntry(store.command(), path, this.rank(parent, child), sequence, this.indexPermissions(node, store));
+        this.entries.add(entry);
+        this.entriesByClass.put(clazz, entry);
+    }
+
+    private int[] indexPermissions(@Nullable CommandTree.Node node, CommandStore store) {
+        // Running a child command requires the permissions of its parents
+        List<String> permissions = new ArrayList<>();
+        if (node == null) {
+            if (store.command().permission() != null) {
+                permissions.add(store.command().permission());
+            }
+        } else {
+            for (CommandTree.Node current = node; current != null; current = current.getParent()) {
+                if (current.getCommand().permission() != null) {
+                    permissions.add(current.getCommand().permission());
+                }
+            }
+        }
+        int[] indexes = new int[permissions.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            Integer index = this.permissionIndexes.get(permissions.get(i));
+            if (index == null) {
+                index = this.permissionIndexes.size();
+                this.permissionIndexes.put(permissions.get(i), index);
+                // The existing groups do not hold the new permission
+                this.groupsBySubject.invalidateAll();
+            }
+            indexes[i] = index;
+        }
+        return indexes;
+    }
+
+    private Text render(HelpEntry entry) {
+        String commandString = this.createCommandString(entry.command, entry.path);
+        if (entry.command.description() != null) {
+            return Text.of(this.commandColor, commandString, " - ", this.descriptionColor, entry.command.description());
+        }
+        return Text.of(this.commandColor, commandString);
+    }
+
+    private String createCommandString(Command command, String path) {
+        String commandString = "/" + path;
+        if (command.usage() != null) {
+            commandString += " " + command.usage();
+        }
+        return commandString;
+    }
+
+    private ContentEntry createContentEntry(Command command, String path) {
+        String commandString = this.createCommandString(command, path);
+        if (command.description() != null) {
+            return new ContentEntryImpl(command, Text.of(this.commandColor, commandString, " - ", this.descriptionColor, command.description()),
+                    Text.of(this.commandColor, commandString), Text.of(this.descriptionColor, command.description()));
+        }
+        return new ContentEntryImpl(command, Text.of(this.commandColor, commandString), Text.of(this.commandColor, commandString), null);
+    }
+
+    /**
+     * Gets the rank of a command for the command ordering. Commands with a
+     * lower rank come first, and commands of the same rank alphabetically.
+     */
+    private int rank(boolean parent, boolean child) {
+        switch (this.commandOrdering) {
+            case PARENT_COMMANDS_FIRST_A_Z:
+            case PARENT_COMMANDS_FIRST_Z_A:
+                return parent ? 0 : 1;
+            case CHILD_COMMANDS_FIRST_A_Z:
+            case CHILD_COMMANDS_FIRST_Z_A:
+                return child ? 0 : 1;
+            case PARENT_AND_CHILD_FIRST_NON_LAST_A_Z:
+            case PARENT_AND_CHILD_FIRST_NON_LAST_Z_A:
+                return parent || child ? 0 : 1;
+            default:
+                return 0;
+        }
+    }
+
+    private Comparator<HelpEntry> createComparator() {
+        Comparator<HelpEntry> bySequence = Comparator.comparingLong(entry -> entry.sequence);
+        if (this.commandOrdering.equals(CommandOrdering.DEFAULT)) {
+            return bySequence;
+        }
+        // Child commands of different parents may share their alias
+        Comparator<HelpEntry> alphabetical = Comparator.<HelpEntry, String>comparing(entry -> entry.alias).thenComparing(entry -> entry.path);
+        if (this.commandOrdering.equals(CommandOrdering.Z_A)
+                || this.commandOrdering.equals(CommandOrdering.PARENT_COMMANDS_FIRST_Z_A)
+                || this.commandOrdering.equals(CommandOrdering.CHILD_COMMANDS_FIRST_Z_A)
+                || this.commandOrdering.equals(CommandOrdering.PARENT_AND_CHILD_FIRST_NON_LAST_Z_A)) {
+            alphabetical = alphabetical.reversed();
+        }
+        return Comparator.<HelpEntry>comparingInt(entry -> entry.rank).thenComparing(alphabetical).thenComparing(bySequence);
+    }
+
     private HelpPaginationHandlerImpl generateContents() {
         this.container.getLogger().info("Generating the contents for the help pagination list!");
-        this.contents = new ArrayList<>();
         if (this.childBehavior == null) {
             this.childBehavior = ChildBehavior.BOTH;
         }
@@ -123,76 +469,55 @@ public class HelpPaginationHandlerImpl implements HelpPaginationHandler {
         this.container.getLogger().info("Command ordering: " + this.commandOrdering);
         this.container.getLogger().info("Command color: " + this.commandColor.getName());
         this.container.getLogger().info("Description color: " + this.descriptionColor.getName());
-        List<CommandStore> commandStores = this.helper.orderContents(this.container.commandStores, this.commandOrdering);
-        for (CommandStore store : commandStores) {
-            if (!this.ignoredCommands.contains(store.command().getClass())) {
-                Command cmd = store.command();
-                Command parentCommand = this.helper.getParentCommand(cmd);
-                String commandString = null;
-                if (this.childBehavior.equals(ChildBehavior.IGNORE_PARENT)) {
-                    // If the child commands is empty, then this is not a
-                    // parent command
-                    if (this.helper.getChildCommands(store.command()).isEmpty()) {
-                        if (parentCommand == null) {
-                            commandString = "/" + cmd.aliases()[0];
-                        } else {
-                            commandString = "/" + parentCommand.aliases()[0] + " " + cmd.aliases()[0];
-                        }
-                    } else {
-                        continue;
-                    }
-                } else if (this.childBehavior.equals(ChildBehavior.IGNORE_CHILD)) {
-                    // If the parent is null, then there is no parent
-                    // command. Therefore this command is not a child.
-                    if (parentCommand == null) {
-                        commandString = "/" + cmd.aliases()[0];
-                    } else {
-                        continue;
-                    }
-                } else if (this.childBehavior.equals(ChildBehavior.BOTH)) {
-                    // Don't ignore anything
-                    commandString = parentCommand != null ? "/" + parentCommand.aliases()[0] + " " + cmd.aliases()[0] : "/" + cmd.aliases()[0];
-                }
-
-                if (store.command().usage() != null) {
-                    commandString += " " + store.command().usage();
-                }
-                this.container.getLogger().info("Adding command string: " + commandString);
-                if (cmd.description() != null) {
-                    this.container.getLogger().info("Adding command description: " + cmd.description());
-                    this.contents
-                            .add(new ContentEntryImpl(cmd, Text.of(this.commandColor, commandString, " - ", this.descriptionColor, cmd.description()),
-                                    Text.of(this.commandColor, commandString), Text.of(this.descriptionColor, cmd.description())));
-                } else {
-                    this.contents.add(
-                            new ContentEntryImpl(cmd, Text.of(this.commandColor, commandString), Text.of(this.commandColor, commandString), null));
-                }
-            }
-        }
-        List<Text> textContents = new ArrayList<>();
-        for (ContentEntry entry : this.contents) {
-            textContents.add(entry.getCompleteText());
+        this.entries = new TreeSet<>(this.createComparator());
+        for (CommandStore store : this.container.commandStores) {
+            this.updateEntry(store.command().getClass());
         }
-        this.paginationBuilder.contents(textContents);
-        this.container.getLogger().info("Help pagination list contents generated!");
+        this.invalidateLists();
+        this.container.getLogger().info("Help pagination list contents generated with " + this.entries.size() + " commands!");
         return this;
     }
 
     private void setDefaults() {
         this.container.getLogger().info("Setting the pagination default values.");
-        if (this.title != null) {
-            this.paginationBuilder.title(this.title);
-        } else {
+        if (this.title == null) {
             // Default to plugin name
-            this.paginationBuilder.title(Text.of(TextColors.GOLD, this.container.getPluginContainer().getName()));
+            this.title = Text.of(TextColors.GOLD, this.container.getPluginContainer().getName());
         }
-        if (this.padding != null) {
-            this.paginationBuilder.padding(padding);
-        } else {
-            this.paginationBuilder.padding(Text.of("-="));
+        if (this.padding == null) {
+            this.padding = Text.of("-=");
+        }
+        this.paginationBuilder.title(this.title);
+        this.paginationBuilder.padding(this.padding);
+    }
+
+    private static class HelpEntry {
+
+        private Command command;
+        private String path;
+        private String alias;
+        private int rank;
+        private long sequence;
+        // The indexes of the required permissions
+        private int[] permissions;
+
+        private HelpEntry(Command command, String path, int rank, long sequence, int[] permissions) {
+            this.command = command;
+            this.path = path;
+            this.alias = command.aliases()[0];
+            this.rank = rank;
+            this.sequence = sequence;
+            this.permissions = permissions;
+        }
+
+        private boolean isPermitted(BitSet group) {
+            for (int permission : this.permissions) {
+                if (!group.get(permission)) {
+                    return false;
+                }
+            }
+            return true;
         }
-        this.commandColor = TextColors.GREEN;
-        this.descriptionColor = TextColors.GOLD;
     }
 
     public class Builder implements HelpPaginationHandler.Builder {
@@ -240,9 +565,11 @@ public class HelpPaginationHandlerImpl implements HelpPaginationHandler {
             container.getLogger().info(Internals.LOG_HEADER);
             container.getLogger().info("Initializing the help pagination handler!");
             container.setHelpPaginationHandler(instance);
-            instance.helper = new CommandHelper(instance.container);
             instance.paginationBuilder = PaginationList.builder();
-            instance.generateContents();
+            instance.filterByPermission = ConfigChecker.helpFilterByPermission(container);
+            try (Timing timing = CoreImpl.instance.getStartupTimings().start(container, "help pagination generation")) {
+                instance.generateContents();
+            }
             instance.setDefaults();
             Sponge.getEventManager().post(new XtraCoreHelpPaginationHandlerInitializedEventImpl(container, instance));
             return instance;
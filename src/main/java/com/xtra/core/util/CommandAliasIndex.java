@@ -0,0 +1,318 @@
+/**
+ * This file is part of XtraCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016 - 2016 XtraStudio <https://github.com/XtraStudio>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.xtra.core.util;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nullable;
+
+import com.xtra.api.command.Command;
+import com.xtra.api.command.annotation.RegisterCommand;
+import com.xtra.api.plugin.XtraCorePluginContainer;
+import com.xtra.api.util.command.EmptyCommand;
+import com.xtra.core.util.map.PersistentHashMap;
+
+/**
+ * Looks up commands by their aliases. Besides plain aliases, a child command
+ * may be looked up through its parent, as in {@code parent$child}, for child
+ * commands that share their alias with other commands.
+ *
+ * <p>A child command belongs to the first command of the class it names as
+ * its parent, which may be a superclass or interface of that command, the same
+ * as in {@link CommandTree}. Children are kept by their parent commands, and
+ * may be added before their parents.</p>
+ *
+ * <p>Lookups never lock and may run while commands are added or removed. The
+ * index is kept in persistent maps, so a change only copies the path to the
+ * changed alias, and a copy of the index is made without copying anything.</p>
+ */
+public class CommandAliasIndex {
+
+    // Commands without a parent come first, so they win plain lookups
+    private volatile PersistentHashMap<String, List<Map.Entry<Command, XtraCorePluginContainer>>> byAlias = PersistentHashMap.empty();
+    // The command every parent class resolves to
+    private volatile PersistentHashMap<Class<?>, Command> parents = PersistentHashMap.empty();
+    private volatile PersistentHashMap<Class<?>, PersistentHashMap<String, Map.Entry<Command, XtraCorePluginContainer>>> childrenByClass =
+            PersistentHashMap.empty();
+    private volatile PersistentHashMap<Command, PersistentHashMap<String, Map.Entry<Command, XtraCorePluginContainer>>> childrenByParent =
+            PersistentHashMap.empty();
+    // Paths that were looked up, replaced whenever the index changes
+    private volatile Map<String, Map.Entry<Command, XtraCorePluginContainer>> paths = new ConcurrentHashMap<>();
+
+    public CommandAliasIndex() {
+    }
+
+    /**
+     * Creates a copy of the specified index, which may be modified without
+     * affecting the original.
+     *
+     * @param other The index to copy
+     */
+    public CommandAliasIndex(CommandAliasIndex other) {
+        checkNotNull(other, "Alias index cannot be null!");
+        // The maps are never modified, so they can be shared
+        this.byAlias = other.byAlias;
+        this.parents = other.parents;
+        this.childrenByClass = other.childrenByClass;
+        this.childrenByParent = other.childrenByParent;
+    }
+
+    public synchronized void add(Command command, XtraCorePluginContainer container) {
+        checkNotNull(command, "Command cannot be null!");
+        Map.Entry<Command, XtraCorePluginContainer> entry = new AbstractMap.SimpleImmutableEntry<>(command, container);
+        Class<? extends Command> parentClass = command.getClass().getAnnotation(RegisterCommand.class).childOf();
+        boolean hasParent = !parentClass.equals(EmptyCommand.class);
+        PersistentHashMap<String, List<Map.Entry<Command, XtraCorePluginContainer>>> byAlias = this.byAlias;
+        PersistentHashMap<String, Map.Entry<Command, XtraCorePluginContainer>> children = null;
+        if (hasParent) {
+            children = this.childrenByClass.get(parentClass);
+            if (children == null) {
+                children = PersistentHashMap.empty();
+            }
+        }
+        for (String alias : command.aliases()) {
+            List<Map.Entry<Command, XtraCorePluginContainer>> previous = byAlias.get(alias);
+            List<Map.Entry<Command, XtraCorePluginContainer>> entries = previous != null ? new ArrayList<>(previous) : new ArrayList<>(1);
+            if (hasParent) {
+                entries.add(entry);
+                if (!children.containsKey(alias)) {
+                    children = children.with(alias, entry);
+                }
+            } else {
+                entries.add(0, entry);
+            }
+            byAlias = byAlias.with(alias, Collections.unmodifiableList(entries));
+        }
+
+        PersistentHashMap<Class<?>, Command> parents = this.parents;
+        PersistentHashMap<Command, PersistentHashMap<String, Map.Entry<Command, XtraCorePluginContainer>>> childrenByParent = this.childrenByParent;
+        if (hasParent) {
+            this.childrenByClass = this.childrenByClass.with(parentClass, children);
+            Command parent = parents.get(parentClass);
+            if (parent != null && parent != command) {
+                PersistentHashMap<String, Map.Entry<Command, XtraCorePluginContainer>> parentChildren = childrenByParent.get(parent);
+                if (parentChildren == null) {
+                    parentChildren = PersistentHashMap.empty();
+                }
+                for (String alias : command.aliases()) {
+                    if (!parentChildren.containsKey(alias)) {
+                        parentChildren = parentChildren.with(alias, entry);
+                    }
+                }
+                childrenByParent = childrenByParent.with(parent, parentChildren);
+            }
+        }
+        // The command becomes the parent of every class it is the first
+        // command of, taking the children that were waiting for it
+        PersistentHashMap<String, Map.Entry<Command, XtraCorePluginContainer>> ownChildren = null;
+        for (Class<?> type : CommandTree.getTypes(command.getClass())) {
+            if (!parents.containsKey(type)) {
+                parents = parents.with(type, command);
+                ownChildren = merge(ownChildren, command, this.childrenByClass.get(type));
+            }
+        }
+        if (ownChildren != null && !ownChildren.isEmpty()) {
+            childrenByParent = childrenByParent.with(command, ownChildren);
+        }
+        this.parents = parents;
+        this.childrenByParent = childrenByParent;
+        this.byAlias = byAlias;
+        this.paths = new ConcurrentHashMap<>();
+    }
+
+    public synchronized void remove(Command command) {
+        checkNotNull(command, "Command cannot be null!");
+        Class<? extends Command> parentClass = command.getClass().getAnnotation(RegisterCommand.class).childOf();
+        PersistentHashMap<String, List<Map.Entry<Command, XtraCorePluginContainer>>> byAlias = this.byAlias;
+        PersistentHashMap<String, Map.Entry<Command, XtraCorePluginContainer>> children = this.childrenByClass.get(parentClass);
+        for (String alias : command.aliases()) {
+            List<Map.Entry<Command, XtraCorePluginContainer>> previous = byAlias.get(alias);
+            if (previous != null) {
+                List<Map.Entry<Command, XtraCorePluginContainer>> entries = new ArrayList<>(previous);
+                entries.removeIf(entry -> entry.getKey().equals(command));
+                if (entries.isEmpty()) {
+                    byAlias = byAlias.without(alias);
+                } else {
+                    byAlias = byAlias.with(alias, Collections.unmodifiableList(entries));
+                }
+            }
+            if (children != null) {
+                Map.Entry<Command, XtraCorePluginContainer> child = children.get(alias);
+                if (child != null && child.getKey().equals(command)) {
+                    children = children.without(alias);
+                }
+            }
+        }
+        this.byAlias = byAlias;
+        if (children != null) {
+            this.childrenByClass = children.isEmpty() ? this.childrenByClass.without(parentClass) : this.childrenByClass.with(parentClass, children);
+            Command parent = this.parents.get(parentClass);
+            if (parent != null) {
+                this.updateChildren(parent);
+            }
+        }
+
+        // Every class the command was the parent of passes to the next
+        // command of that class
+        PersistentHashMap<Class<?>, Command> parents = this.parents;
+        List<Class<?>> released = new ArrayList<>();
+        for (Class<?> type : CommandTree.getTypes(command.getClass())) {
+            if (parents.get(type) == command) {
+                parents = parents.without(type);
+                released.add(type);
+            }
+        }
+        Set<Command> successors = new LinkedHashSet<>();
+        if (!released.isEmpty()) {
+            for (Map.Entry<String, List<Map.Entry<Command, XtraCorePluginContainer>>> aliasEntries : byAlias.asMap().entrySet()) {
+                for (Map.Entry<Command, XtraCorePluginContainer> entry : aliasEntries.getValue()) {
+                    for (Class<?> type : released) {
+                        if (!parents.containsKey(type) && type.isInstance(entry.getKey())) {
+                            parents = parents.with(type, entry.getKey());
+                            successors.add(entry.getKey());
+                        }
+                    }
+                }
+            }
+        }
+        this.parents = parents;
+        this.childrenByParent = this.childrenByParent.without(command);
+        for (Command successor : successors) {
+            this.updateChildren(successor);
+        }
+        this.paths = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Gets the command the specified command is a child of.
+     *
+     * @param command The command
+     * @return The parent command, or null if the command has no parent or its
+     *         parent is not indexed
+     */
+    @Nullable
+    public Command getParent(Command command) {
+        checkNotNull(command, "Command cannot be null!");
+        Class<? extends Command> parentClass = command.getClass().getAnnotation(RegisterCommand.class).childOf();
+        if (parentClass.equals(EmptyCommand.class)) {
+            return null;
+        }
+        Command parent = this.parents.get(parentClass);
+        return parent != command ? parent : null;
+    }
+
+    /**
+     * Gets the command with the specified alias. If the alias contains dollar
+     * signs, it is a path of aliases starting at a root command, as in
+     * {@code parent$child$grandchild}, and may be of any depth.
+     *
+     * @param alias The alias
+     * @return The command and its container, or null if not found
+     */
+    @Nullable
+    public Map.Entry<Command, XtraCorePluginContainer> get(String alias) {
+        checkNotNull(alias, "Primary alias cannot be null!");
+        int separator = alias.indexOf('$');
+        if (separator < 0) {
+            List<Map.Entry<Command, XtraCorePluginContainer>> entries = this.byAlias.get(alias);
+            return entries != null ? entries.get(0) : null;
+        }
+        // Read before the maps, so a path found in an older index is never
+        // kept for a newer one
+        Map<String, Map.Entry<Command, XtraCorePluginContainer>> paths = this.paths;
+        Map.Entry<Command, XtraCorePluginContainer> found = paths.get(alias);
+        if (found != null) {
+            return found;
+        }
+
+        // Every command with the first alias may start the path, and the
+        // path is followed one level down at a time
+        PersistentHashMap<Command, PersistentHashMap<String, Map.Entry<Command, XtraCorePluginContainer>>> childrenByParent = this.childrenByParent;
+        List<Map.Entry<Command, XtraCorePluginContainer>> candidates = this.byAlias.get(alias.substring(0, separator));
+        while (candidates != null && separator < alias.length()) {
+            int end = alias.indexOf('$', separator + 1);
+            if (end < 0) {
+                end = alias.length();
+            }
+            String childAlias = alias.substring(separator + 1, end);
+            List<Map.Entry<Command, XtraCorePluginContainer>> next = null;
+            for (Map.Entry<Command, XtraCorePluginContainer> candidate : candidates) {
+                PersistentHashMap<String, Map.Entry<Command, XtraCorePluginContainer>> children = childrenByParent.get(candidate.getKey());
+                Map.Entry<Command, XtraCorePluginContainer> child = children != null ? children.get(childAlias) : null;
+                if (child != null) {
+                    if (next == null) {
+                        next = new ArrayList<>(1);
+                    }
+                    next.add(child);
+                }
+            }
+            candidates = next;
+            separator = end;
+        }
+        if (candidates == null) {
+            return null;
+        }
+        paths.put(alias, candidates.get(0));
+        return candidates.get(0);
+    }
+
+    private void updateChildren(Command parent) {
+        PersistentHashMap<String, Map.Entry<Command, XtraCorePluginContainer>> children = null;
+        for (Class<?> type : CommandTree.getTypes(parent.getClass())) {
+            if (this.parents.get(type) == parent) {
+                children = merge(children, parent, this.childrenByClass.get(type));
+            }
+        }
+        this.childrenByParent = children == null || children.isEmpty() ? this.childrenByParent.without(parent)
+                : this.childrenByParent.with(parent, children);
+    }
+
+    private static PersistentHashMap<String, Map.Entry<Command, XtraCorePluginContainer>> merge(
+            @Nullable PersistentHashMap<String, Map.Entry<Command, XtraCorePluginContainer>> children, Command parent,
+            @Nullable PersistentHashMap<String, Map.Entry<Command, XtraCorePluginContainer>> toAdd) {
+        if (children == null) {
+            children = PersistentHashMap.empty();
+        }
+        if (toAdd != null) {
+            for (Map.Entry<String, Map.Entry<Command, XtraCorePluginContainer>> child : toAdd.asMap().entrySet()) {
+                // A command is never its own child
+                if (child.getValue().getKey() != parent && !children.containsKey(child.getKey())) {
+                    children = children.with(child.getKey(), child.getValue());
+                }
+            }
+        }
+        return children;
+    }
+}
@@ -0,0 +1,275 @@
+/**
+ * This file is part of XtraCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016 - 2016 XtraStudio <https://github.com/XtraStudio>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.xtra.core.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.annotation.Nullable;
+
+import com.xtra.api.command.Command;
+import com.xtra.api.command.annotation.RegisterCommand;
+import com.xtra.api.util.command.EmptyCommand;
+
+/**
+ * The commands of a plugin, arranged by their parent commands. The tree is
+ * built in linear time, and commands registered or unregistered at runtime
+ * are added and removed in place, touching only their own nodes and their
+ * parent's children. Lookups never lock and may run while the tree changes.
+ */
+public class CommandTree {
+
+    private Map<Class<?>, Node> nodes = new ConcurrentHashMap<>();
+    private Queue<Node> roots = new ConcurrentLinkedQueue<>();
+
+    private CommandTree() {
+    }
+
+    public static CommandTree build(Collection<Command> commands) {
+        CommandTree tree = new CommandTree();
+        // Parents may be specified by a supertype of a command, the first
+        // command of every supertype is its match
+        Map<Class<?>, Node> supertypes = new HashMap<>();
+        for (Command command : commands) {
+            Node node = new Node(command);
+            tree.nodes.put(command.getClass(), node);
+            indexSupertypes(command.getClass(), node, supertypes);
+        }
+        for (Node node : tree.nodes.values()) {
+            Class<? extends Command> parentClass = node.command.getClass().getAnnotation(RegisterCommand.class).childOf();
+            if (parentClass.equals(EmptyCommand.class)) {
+                tree.roots.add(node);
+                continue;
+            }
+            Node parent = tree.nodes.get(parentClass);
+            if (parent == null) {
+                parent = supertypes.get(parentClass);
+            }
+            if (parent != null) {
+                node.parent = parent;
+                parent.children.add(node);
+            }
+        }
+        // Breadth first, so every parent has its depth and path before its
+        // children. Commands with a missing parent are not part of the tree.
+        for (List<Node> level : tree.getLevels()) {
+            for (Node node : level) {
+                if (node.parent != null) {
+                    node.depth = node.parent.depth + 1;
+                    node.path = node.parent.path + " " + node.command.aliases()[0];
+                }
+            }
+        }
+        return tree;
+    }
+
+    private static void indexSupertypes(Class<?> clazz, Node node, Map<Class<?>, Node> supertypes) {
+        for (Class<?> type : getTypes(clazz)) {
+            supertypes.putIfAbsent(type, node);
+        }
+    }
+
+    /**
+     * Gets the specified class and all of its supertypes, except for
+     * {@link Object}. The superclasses come first, nearest first, followed by
+     * the interfaces.
+     * 
+     * @param clazz The class
+     * @return The class and its supertypes
+     */
+    public static List<Class<?>> getTypes(Class<?> clazz) {
+        List<Class<?>> types = new ArrayList<>();
+        for (Class<?> type = clazz; type != null && type != Object.class; type = type.getSuperclass()) {
+            types.add(type);
+        }
+        for (int i = 0; i < types.size(); i++) {
+            for (Class<?> type : types.get(i).getInterfaces()) {
+                if (!types.contains(type)) {
+                    types.add(type);
+                }
+            }
+        }
+        return types;
+    }
+
+    /**
+     * Adds a command to the tree. Its parent command, if it has one, must
+     * already be part of the tree, or the command will not be either.
+     * 
+     * @param command The command
+     * @return The node of the command, or null if its parent command is not
+     *         part of the tree
+     */
+    @Nullable
+    public Node add(Command command) {
+        Class<? extends Command> parentClass = command.getClass().getAnnotation(RegisterCommand.class).childOf();
+        Node node = new Node(command);
+        if (parentClass.equals(EmptyCommand.class)) {
+            this.nodes.put(command.getClass(), node);
+            this.roots.add(node);
+            return node;
+        }
+        Node parent = this.get(parentClass);
+        if (parent == null) {
+            return null;
+        }
+        // Complete before it can be reached by lookups
+        node.parent = parent;
+        node.depth = parent.depth + 1;
+        node.path = parent.path + " " + command.aliases()[0];
+        this.nodes.put(command.getClass(), node);
+        parent.children.add(node);
+        return node;
+    }
+
+    /**
+     * Removes a command from the tree, together with all of its child
+     * commands.
+     * 
+     * @param clazz The command class
+     * @return The removed nodes, every parent before its children, or an empty
+     *         list if the command is not part of the tree
+     */
+    public List<Node> remove(Class<? extends Command> clazz) {
+        Node node = this.get(clazz);
+        if (node == null) {
+            return Collections.emptyList();
+        }
+        // Detached first, so the subtree can no longer be reached from the
+        // roots while it is removed
+        if (node.parent != null) {
+            node.parent.children.remove(node);
+        } else {
+            this.roots.remove(node);
+        }
+        List<Node> removed = new ArrayList<>();
+        removed.add(node);
+        for (int i = 0; i < removed.size(); i++) {
+            this.nodes.remove(removed.get(i).command.getClass());
+            removed.addAll(removed.get(i).children);
+        }
+        return removed;
+    }
+
+    /**
+     * Gets the node of the command with the specified class.
+     * 
+     * @param clazz The command class
+     * @return The node, or null if the command is not part of the tree
+     */
+    @Nullable
+    public Node get(Class<? extends Command> clazz) {
+        Node node = this.nodes.get(clazz);
+        return node != null && node.path != null ? node : null;
+    }
+
+    public Collection<Node> getRoots() {
+        return Collections.unmodifiableCollection(this.roots);
+    }
+
+    /**
+     * Gets the nodes by their depth, starting with the root commands.
+     * 
+     * @return The nodes, by depth
+     */
+    public List<List<Node>> getLevels() {
+        List<List<Node>> levels = new ArrayList<>();
+        List<Node> level = new ArrayList<>(this.roots);
+        while (!level.isEmpty()) {
+            levels.add(Collections.unmodifiableList(level));
+            List<Node> next = new ArrayList<>();
+            for (Node node : level) {
+                next.addAll(node.children);
+            }
+            level = next;
+        }
+        return levels;
+    }
+
+    public static class Node {
+
+        private Command command;
+        @Nullable private Node parent;
+        private Queue<Node> children = new ConcurrentLinkedQueue<>();
+        private int depth;
+        private String path;
+
+        private Node(Command command) {
+            this.command = command;
+            this.path = command.getClass().getAnnotation(RegisterCommand.class).childOf().equals(EmptyCommand.class) ? command.aliases()[0] : null;
+        }
+
+        public Command getCommand() {
+            return this.command;
+        }
+
+        @Nullable
+        public Node getParent() {
+            return this.parent;
+        }
+
+        public Collection<Node> getChildren() {
+            return Collections.unmodifiableCollection(this.children);
+        }
+
+        /**
+         * Gets the depth of the command, which is 0 for root commands.
+         * 
+         * @return The depth
+         */
+        public int getDepth() {
+            return this.depth;
+        }
+
+        /**
+         * Gets the primary aliases of the command and its parents, separated by
+         * spaces, such as {@code xtracore command}.
+         * 
+         * @return The path
+         */
+        public String getPath() {
+            return this.path;
+        }
+
+        /**
+         * Gets the path of the command, with the aliases separated by the
+         * specified separator, such as {@code xtracore$command}.
+         * 
+         * @param separator The separator
+         * @return The path
+         */
+        public String getPath(char separator) {
+            return this.path.replace(' ', separator);
+        }
+    }
+}
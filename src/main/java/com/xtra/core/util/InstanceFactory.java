@@ -0,0 +1,182 @@
+/**
+ * This file is part of XtraCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016 - 2016 XtraStudio <https://github.com/XtraStudio>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.xtra.core.util;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.util.function.Supplier;
+
+/**
+ * Creates new instances of classes through their no-args constructor. A
+ * factory is created only once per class and then reused, which avoids the
+ * access checks of {@link Class#newInstance()} on every call.
+ */
+public class InstanceFactory {
+
+    private static final ClassValue<Supplier<?>> FACTORIES = new ClassValue<Supplier<?>>() {
+
+        @Override
+        protected Supplier<?> computeValue(Class<?> type) {
+            return createFactory(type);
+        }
+    };
+
+    /**
+     * Creates a new instance of the specified class.
+     *
+     * @param clazz The class to instantiate
+     * @return The new instance
+     * @throws InstantiationException If the class has no accessible no-args
+     *         constructor, or if the constructor threw an exception
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T newInstance(Class<T> clazz) throws InstantiationException {
+        try {
+            return (T) FACTORIES.get(clazz).get();
+        } catch (FactoryException e) {
+            throw wrap(clazz, e.getCause());
+        } catch (Exception | LinkageError e) {
+            // The constructor may throw checked exceptions as well, and
+            // classes of a plugin may fail to link
+            throw wrap(clazz, e);
+        }
+    }
+
+    private static Supplier<?> createFactory(Class<?> type) {
+        if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+            return () -> {
+                throw new FactoryException(new InstantiationException(type.getName() + " is abstract!"));
+            };
+        }
+        Constructor<?> constructor;
+        try {
+            constructor = type.getDeclaredConstructor();
+        } catch (NoSuchMethodException e) {
+            return () -> {
+                throw new FactoryException(e);
+            };
+        }
+
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        Supplier<?> fallback = createHandleFactory(lookup, constructor);
+        // The fastest option, which only works for public constructors. The
+        // generated class is defined next to this class, so it must be able
+        // to see the type through the class loader of XtraCore.
+        if (Modifier.isPublic(type.getModifiers()) && Modifier.isPublic(constructor.getModifiers()) && isVisible(type)) {
+            try {
+                MethodHandle handle = lookup.findConstructor(type, MethodType.methodType(void.class));
+                CallSite site = LambdaMetafactory.metafactory(lookup, "get", MethodType.methodType(Supplier.class),
+                        MethodType.methodType(Object.class), handle, MethodType.methodType(type));
+                return new LinkedFactory((Supplier<?>) site.getTarget().invokeExact(), fallback);
+            } catch (Throwable e) {
+                // Fall back to a plain method handle below
+            }
+        }
+        return fallback;
+    }
+
+    private static Supplier<?> createHandleFactory(MethodHandles.Lookup lookup, Constructor<?> constructor) {
+        try {
+            constructor.setAccessible(true);
+            MethodHandle handle = lookup.unreflectConstructor(constructor).asType(MethodType.methodType(Object.class));
+            return () -> {
+                try {
+                    return handle.invokeExact();
+                } catch (Throwable e) {
+                    throw new FactoryException(e);
+                }
+            };
+        } catch (IllegalAccessException | SecurityException e) {
+            return () -> {
+                throw new FactoryException(e);
+            };
+        }
+    }
+
+    private static boolean isVisible(Class<?> type) {
+        try {
+            return Class.forName(type.getName(), false, InstanceFactory.class.getClassLoader()) == type;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    private static InstantiationException wrap(Class<?> clazz, Throwable cause) {
+        if (cause instanceof InstantiationException) {
+            return (InstantiationException) cause;
+        }
+        InstantiationException exception = new InstantiationException("Could not instantiate " + clazz.getName() + "!");
+        exception.initCause(cause);
+        return exception;
+    }
+
+    /**
+     * A factory using a generated supplier, which falls back to a method
+     * handle if the supplier fails to link on its first call.
+     */
+    private static class LinkedFactory implements Supplier<Object> {
+
+        private final Supplier<?> fallback;
+        private volatile Supplier<?> supplier;
+        private volatile boolean linked;
+
+        LinkedFactory(Supplier<?> supplier, Supplier<?> fallback) {
+            this.supplier = supplier;
+            this.fallback = fallback;
+        }
+
+        @Override
+        public Object get() {
+            if (this.linked) {
+                return this.supplier.get();
+            }
+            Object instance;
+            try {
+                instance = this.supplier.get();
+            } catch (NoClassDefFoundError | IllegalAccessError e) {
+                this.supplier = this.fallback;
+                this.linked = true;
+                return this.fallback.get();
+            }
+            this.linked = true;
+            return instance;
+        }
+    }
+
+    private static class FactoryException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        FactoryException(Throwable cause) {
+            super(cause);
+        }
+    }
+}
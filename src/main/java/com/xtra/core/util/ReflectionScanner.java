@@ -25,14 +25,25 @@
 
 package com.xtra.core.util;
 
+import java.io.IOException;
 import java.lang.reflect.Method;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.function.Predicate;
 
 import org.reflections.Reflections;
 import org.reflections.scanners.MethodAnnotationsScanner;
 import org.reflections.scanners.SubTypesScanner;
 import org.reflections.scanners.TypeAnnotationsScanner;
+import org.reflections.util.ClasspathHelper;
+import org.reflections.util.ConfigurationBuilder;
+import org.reflections.util.FilterBuilder;
 import org.spongepowered.api.event.Listener;
 import org.spongepowered.api.plugin.Plugin;
 
@@ -43,16 +54,40 @@ import com.xtra.api.command.annotation.RegisterCommand;
 import com.xtra.api.config.Config;
 import com.xtra.api.config.annotation.RegisterConfig;
 import com.xtra.api.plugin.XtraCorePluginContainer;
+import com.xtra.core.CoreImpl;
+import com.xtra.core.XtraCore;
 import com.xtra.core.internal.Internals;
+import com.xtra.core.util.scan.ScanCache;
+import com.xtra.core.util.scan.ScanFilter;
+import com.xtra.core.util.scan.ScanIndex;
+import com.xtra.core.util.timing.StartupTimings.Timing;
 
 /**
  * A class that uses reflection to scan a plugin for information, such as the
- * plugin's commands.
+ * plugin's commands. If the plugin was compiled with the
+ * {@link com.xtra.core.util.scan.ScanIndexProcessor}, the generated index is
+ * used instead. Otherwise the results of the last scan are used if the plugin
+ * jar has not changed, and the classpath is only scanned when neither exist.
  */
 public class ReflectionScanner {
 
     private XtraCorePluginContainer container;
-    private Reflections reflections;
+    private ScanIndex index;
+    // The packages this scanner owns, and the packages owned by other plugins
+    // that are nested within them.
+    private List<String> packages = new ArrayList<>();
+    private List<String> foreignPackages = new ArrayList<>();
+    private List<String> excludes = new ArrayList<>();
+    // Whether the packages were set in plugins.conf, in which case they also
+    // filter the generated index. The exclusions always do.
+    private boolean included;
+    // The scan results, kept so that the scan can be done ahead of time on
+    // another thread. The command classes are only loaded ahead of time, as
+    // the commands themselves may need the plugin's configs.
+    private Set<Class<?>> commandClasses;
+    private Set<Command> commands;
+    private Set<Config> configs;
+    private Multimap<Class<?>, Method> listeners;
 
     private ReflectionScanner() {
     }
@@ -60,31 +95,211 @@ public class ReflectionScanner {
     public static ReflectionScanner create(XtraCorePluginContainer container) {
         ReflectionScanner scanner = new ReflectionScanner();
         scanner.container = container;
-        scanner.reflections = new Reflections(container.getPlugin().getClass().getPackage().getName(), new SubTypesScanner(),
-                new TypeAnnotationsScanner(), new MethodAnnotationsScanner());
+        scanner.packages.add(container.getPlugin().getClass().getPackage().getName());
         return scanner;
     }
 
+    /**
+     * Creates the scanners for several plugins at once. Plugins without a scan
+     * index or valid cached results are scanned together in a single pass
+     * over the classpath, with the jars being scanned in parallel. The results
+     * are then partitioned by the plugin owning the most specific package of
+     * each class.
+     * 
+     * @param filters The plugins to scan, with their package filters
+     * @return The scanners for each plugin
+     */
+    public static Map<XtraCorePluginContainer, ReflectionScanner> createAll(Map<XtraCorePluginContainer, ScanFilter> filters) {
+        Map<XtraCorePluginContainer, ReflectionScanner> scanners = new HashMap<>();
+        List<ReflectionScanner> candidates = new ArrayList<>();
+        for (Map.Entry<XtraCorePluginContainer, ScanFilter> entry : filters.entrySet()) {
+            ReflectionScanner scanner = new ReflectionScanner();
+            scanner.container = entry.getKey();
+            scanner.packages.addAll(entry.getValue().includes());
+            scanner.included = !scanner.packages.isEmpty();
+            if (scanner.packages.isEmpty()) {
+                scanner.packages.add(entry.getKey().getPlugin().getClass().getPackage().getName());
+            }
+            scanner.excludes.addAll(entry.getValue().excludes());
+            scanners.put(entry.getKey(), scanner);
+            if (!scanner.findIndex()) {
+                candidates.add(scanner);
+            }
+        }
+
+        // Find the packages of other plugins that are nested in each plugin's
+        // packages, as their classes belong to the other plugin. This includes
+        // plugins with a scan index, and XtraCore itself.
+        for (ReflectionScanner scanner : candidates) {
+            scanner.addForeignPackage(XtraCore.class.getPackage().getName());
+            for (ReflectionScanner other : scanners.values()) {
+                if (other != scanner) {
+                    for (String otherPackage : other.packages) {
+                        scanner.addForeignPackage(otherPackage);
+                    }
+                }
+            }
+        }
+
+        List<ReflectionScanner> toScan = new ArrayList<>();
+        for (ReflectionScanner scanner : candidates) {
+            Optional<ScanIndex> cached = ScanCache.read(scanner.container, scanner.getCacheKey(), scanner.getUrls());
+            if (cached.isPresent()) {
+                scanner.index = cached.get();
+            } else {
+                toScan.add(scanner);
+            }
+        }
+        if (!toScan.isEmpty()) {
+            scan(toScan);
+        }
+        return scanners;
+    }
+
+    private void addForeignPackage(String otherPackage) {
+        for (String packageName : this.packages) {
+            if (otherPackage.length() > packageName.length() && otherPackage.startsWith(packageName + ".")) {
+                this.foreignPackages.add(otherPackage);
+            }
+        }
+    }
+
+    private static void scan(List<ReflectionScanner> toScan) {
+        Set<URL> urls = new HashSet<>();
+        Set<ClassLoader> loaders = new HashSet<>();
+        FilterBuilder filter = new FilterBuilder();
+        for (ReflectionScanner scanner : toScan) {
+            loaders.add(scanner.container.getPlugin().getClass().getClassLoader());
+            urls.addAll(scanner.getUrls());
+            for (String packageName : scanner.packages) {
+                filter.includePackage(packageName);
+            }
+        }
+        // The exclusions of each plugin only apply to its own classes, so they
+        // are applied when the results are partitioned. A package is only left
+        // out of the scan itself when no plugin scanning it wants its classes.
+        // Exclusions must come after all of the inclusions.
+        Set<String> excluded = new HashSet<>();
+        for (ReflectionScanner scanner : toScan) {
+            for (String exclude : scanner.excludes) {
+                if (excluded.add(exclude) && isExcludedByAll(toScan, exclude)) {
+                    filter.excludePackage(exclude);
+                }
+            }
+        }
+
+        // Taken before the scan, so that a location changing during the scan
+        // is never stored as the state the results were read from
+        Map<ReflectionScanner, Optional<List<ScanCache.Fingerprint>>> fingerprints = new HashMap<>();
+        for (ReflectionScanner scanner : toScan) {
+            fingerprints.put(scanner, ScanCache.fingerprint(scanner.container, scanner.getUrls()));
+        }
+
+        Internals.globalLogger.info("Scanning " + urls.size() + " classpath location(s) for " + toScan.size() + " plugin(s)...");
+        long start = System.nanoTime();
+        Reflections reflections = new Reflections(new ConfigurationBuilder()
+                .setUrls(urls)
+                .addClassLoaders(loaders.toArray(new ClassLoader[loaders.size()]))
+                .filterInputsBy(filter)
+                .setScanners(new SubTypesScanner(), new TypeAnnotationsScanner(), new MethodAnnotationsScanner())
+                .useParallelExecutor());
+        // The scan is shared, so it is recorded for every plugin scanned
+        long duration = System.nanoTime() - start;
+        for (ReflectionScanner scanner : toScan) {
+            CoreImpl.instance.getStartupTimings().record(scanner.container.getPluginContainer().getId(), "classpath scan (shared)", duration);
+            scanner.index = scanner.createIndex(reflections);
+            Optional<List<ScanCache.Fingerprint>> scannerFingerprints = fingerprints.get(scanner);
+            if (scannerFingerprints.isPresent()) {
+                ScanCache.write(scanner.container, scanner.getCacheKey(), scannerFingerprints.get(), scanner.index);
+            }
+        }
+    }
+
+    private static boolean isExcludedByAll(List<ReflectionScanner> scanners, String exclude) {
+        for (ReflectionScanner scanner : scanners) {
+            for (String packageName : scanner.packages) {
+                // Whichever of the two packages is nested in the other must be
+                // excluded by the scanner as well
+                if (covers(packageName, exclude) && !scanner.isExcluded(exclude)) {
+                    return false;
+                }
+                if (covers(exclude, packageName) && !scanner.isExcluded(packageName)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean covers(String packageName, String name) {
+        return name.equals(packageName) || name.startsWith(packageName + ".");
+    }
+
     /**
      * Uses reflection to get the commands of the plugin.
      * 
      * @return A set of the commands
      */
-    public Set<Command> getCommands() {
+    public synchronized Set<Command> getCommands() {
+        if (this.commands == null) {
+            try (Timing timing = CoreImpl.instance.getStartupTimings().start(this.container, "command instantiation")) {
+                this.commands = this.scanCommands();
+            }
+        }
+        return this.commands;
+    }
+
+    /**
+     * Loads the command classes of the plugin without instantiating them, so
+     * that {@link #getCommands()} only has to create the commands. This may be
+     * called from any thread.
+     */
+    public synchronized void loadCommandClasses() {
+        if (this.commandClasses == null) {
+            try (Timing timing = CoreImpl.instance.getStartupTimings().start(this.container, "command class loading")) {
+                this.commandClasses = this.loadClasses(this.getIndex().commands());
+            }
+        }
+    }
+
+    /**
+     * Uses reflection to get the configs of a plugin.
+     * 
+     * @return A set of configs
+     */
+    public synchronized Set<Config> getConfigs() {
+        if (this.configs == null) {
+            try (Timing timing = CoreImpl.instance.getStartupTimings().start(this.container, "config instantiation")) {
+                this.configs = this.scanConfigs();
+            }
+        }
+        return this.configs;
+    }
+
+    public synchronized Multimap<Class<?>, Method> getPluginListeners() {
+        if (this.listeners == null) {
+            try (Timing timing = CoreImpl.instance.getStartupTimings().start(this.container, "listener lookup")) {
+                this.listeners = this.scanPluginListeners();
+            }
+        }
+        return this.listeners;
+    }
+
+    private Set<Command> scanCommands() {
         this.container.getLogger().info(Internals.LOG_HEADER);
         this.container.getLogger().info("Using reflection to access the registered commands...");
-        Set<Class<?>> classes = this.reflections.getTypesAnnotatedWith(RegisterCommand.class);
+        this.loadCommandClasses();
         Set<Command> commands = new HashSet<>();
 
-        for (Class<?> oneClass : classes) {
+        for (Class<?> oneClass : this.commandClasses) {
             try {
-                Object o = oneClass.newInstance();
+                Object o = InstanceFactory.newInstance(oneClass);
                 if (o instanceof Command) {
                     Command c = (Command) o;
                     this.container.getLogger().info("Recognized command '" + c.aliases()[0] + "'! Adding to command list...");
                     commands.add(c);
                 }
-            } catch (InstantiationException | IllegalAccessException e) {
+            } catch (InstantiationException e) {
                 this.container.getLogger().error("An error has occurred while attempting to instantiate the commands!", e);
             }
         }
@@ -92,27 +307,22 @@ public class ReflectionScanner {
         return commands;
     }
 
-    /**
-     * Uses reflection to get the configs of a plugin.
-     * 
-     * @return A set of configs
-     */
-    public Set<Config> getConfigs() {
+    private Set<Config> scanConfigs() {
         this.container.getLogger().info(Internals.LOG_HEADER);
         this.container.getLogger().info("Using reflection to access the registered configs...");
-        Set<Class<?>> classes = this.reflections.getTypesAnnotatedWith(RegisterConfig.class);
+        Set<Class<?>> classes = this.loadClasses(this.getIndex().configs());
         Set<Config> configs = new HashSet<>();
 
         for (Class<?> oneClass : classes) {
             try {
-                Object o = oneClass.newInstance();
+                Object o = InstanceFactory.newInstance(oneClass);
                 if (o instanceof Config) {
                     Config c = (Config) o;
                     this.container.getLogger().info("Recognized config '" + c.getClass().getAnnotation(RegisterConfig.class).configName()
                             + "'! Adding to config list...");
                     configs.add(c);
                 }
-            } catch (InstantiationException | IllegalAccessException e) {
+            } catch (InstantiationException e) {
                 this.container.getLogger().error("An error has occurred while attempting to instantiate the configs!", e);
             }
         }
@@ -120,22 +330,142 @@ public class ReflectionScanner {
         return configs;
     }
 
-    public Multimap<Class<?>, Method> getPluginListeners() {
+    private Multimap<Class<?>, Method> scanPluginListeners() {
         this.container.getLogger().info(Internals.LOG_HEADER);
         this.container.getLogger().info("Using reflection to access and register the listeners...");
-        Set<Method> methods = this.reflections.getMethodsAnnotatedWith(Listener.class);
         Multimap<Class<?>, Method> map = ArrayListMultimap.create();
-        for (Method method : methods) {
-            if (method.getDeclaringClass().getAnnotation(Plugin.class) == null) {
-                this.container.getLogger().info("Registering method listener:");
-                this.container.getLogger().info(method.toString());
-                if (map.containsKey(method.getDeclaringClass())) {
-                    map.get(method.getDeclaringClass()).add(method);
-                } else {
-                    map.put(method.getDeclaringClass(), method);
+        for (Class<?> listenerClass : this.loadClasses(this.getIndex().listeners())) {
+            if (listenerClass.getAnnotation(Plugin.class) != null) {
+                continue;
+            }
+            for (Method method : listenerClass.getDeclaredMethods()) {
+                if (method.isAnnotationPresent(Listener.class)) {
+                    this.container.getLogger().info("Registering method listener:");
+                    this.container.getLogger().info(method.toString());
+                    map.put(listenerClass, method);
                 }
             }
         }
         return map;
     }
+
+    private synchronized ScanIndex getIndex() {
+        if (this.index == null && !this.findIndex()) {
+            Optional<ScanIndex> cached = ScanCache.read(this.container, this.getCacheKey(), this.getUrls());
+            if (cached.isPresent()) {
+                this.index = cached.get();
+            } else {
+                this.container.getLogger().info("No scan index found, scanning the classpath.");
+                Optional<List<ScanCache.Fingerprint>> fingerprints = ScanCache.fingerprint(this.container, this.getUrls());
+                Reflections reflections;
+                try (Timing timing = CoreImpl.instance.getStartupTimings().start(this.container, "classpath scan")) {
+                    reflections = new Reflections(this.packages.get(0), new SubTypesScanner(), new TypeAnnotationsScanner(),
+                            new MethodAnnotationsScanner());
+                }
+                this.index = this.createIndex(reflections);
+                if (fingerprints.isPresent()) {
+                    ScanCache.write(this.container, this.getCacheKey(), fingerprints.get(), this.index);
+                }
+            }
+        }
+        return this.index;
+    }
+
+    private boolean findIndex() {
+        try {
+            Optional<ScanIndex> found = ScanIndex.find(this.container.getPlugin().getClass());
+            if (found.isPresent()) {
+                this.index = found.get();
+                // The index lists every annotated class of the plugin, so the
+                // packages set in plugins.conf still apply
+                Predicate<String> filter = name -> this.included ? !this.owns(name) : this.isExcluded(name);
+                this.index.commands().removeIf(filter);
+                this.index.configs().removeIf(filter);
+                this.index.listeners().removeIf(filter);
+                return true;
+            }
+        } catch (IOException e) {
+            this.container.getLogger().error("An error has occurred while attempting to read the scan index for "
+                    + this.container.getPlugin().getClass().getName() + "! Falling back to a classpath scan.", e);
+        }
+        return false;
+    }
+
+    private ScanIndex createIndex(Reflections reflections) {
+        ScanIndex index = new ScanIndex();
+        for (Class<?> clazz : reflections.getTypesAnnotatedWith(RegisterCommand.class)) {
+            if (this.owns(clazz)) {
+                index.commands().add(clazz.getName());
+            }
+        }
+        for (Class<?> clazz : reflections.getTypesAnnotatedWith(RegisterConfig.class)) {
+            if (this.owns(clazz)) {
+                index.configs().add(clazz.getName());
+            }
+        }
+        for (Method method : reflections.getMethodsAnnotatedWith(Listener.class)) {
+            if (this.owns(method.getDeclaringClass())) {
+                index.listeners().add(method.getDeclaringClass().getName());
+            }
+        }
+        return index;
+    }
+
+    private Set<URL> getUrls() {
+        ClassLoader loader = this.container.getPlugin().getClass().getClassLoader();
+        Set<URL> urls = new HashSet<>();
+        for (String packageName : this.packages) {
+            urls.addAll(ClasspathHelper.forPackage(packageName, loader));
+        }
+        return urls;
+    }
+
+    private String getCacheKey() {
+        // Anything that changes which classes belong to the plugin must be a
+        // part of the key. The scanned locations are checked by the cache.
+        return this.packages + ";" + this.excludes + ";" + this.foreignPackages;
+    }
+
+    private boolean isExcluded(String name) {
+        for (String exclude : this.excludes) {
+            if (covers(exclude, name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean owns(Class<?> clazz) {
+        return this.owns(clazz.getName());
+    }
+
+    private boolean owns(String name) {
+        if (this.isExcluded(name)) {
+            return false;
+        }
+        for (String foreignPackage : this.foreignPackages) {
+            if (name.startsWith(foreignPackage + ".")) {
+                return false;
+            }
+        }
+        for (String packageName : this.packages) {
+            if (name.startsWith(packageName + ".")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Set<Class<?>> loadClasses(Set<String> classNames) {
+        ClassLoader loader = this.container.getPlugin().getClass().getClassLoader();
+        Set<Class<?>> classes = new HashSet<>();
+        for (String className : classNames) {
+            try {
+                classes.add(Class.forName(className, false, loader));
+            } catch (ClassNotFoundException | LinkageError e) {
+                this.container.getLogger().error("The scan index references the class " + className + ", but it could not be loaded!", e);
+            }
+        }
+        return classes;
+    }
 }
@@ -0,0 +1,390 @@
+/**
+ * This file is part of XtraCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016 - 2016 XtraStudio <https://github.com/XtraStudio>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.xtra.core.util.map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+/**
+ * An immutable hash map. Adding or removing a key returns a new map sharing
+ * every node off the path to that key, so a change costs O(log n) instead of a
+ * copy of the whole map, and a map may be published to other threads as part
+ * of a snapshot. Null keys and values are not permitted.
+ *
+ * @param <K> The key type
+ * @param <V> The value type
+ */
+public class PersistentHashMap<K, V> {
+
+    private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(BitmapNode.EMPTY, 0);
+    // Five bits of the hash per level, so at most seven levels and a
+    // collision node below them
+    private static final int MAX_DEPTH = 8;
+
+    private final Node root;
+    private final int size;
+
+    private PersistentHashMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> empty() {
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        return (V) this.root.get(key, hash(key), 0);
+    }
+
+    public boolean containsKey(Object key) {
+        return this.get(key) != null;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public PersistentHashMap<K, V> with(K key, V value) {
+        checkNotNull(key, "Key cannot be null!");
+        checkNotNull(value, "Value cannot be null!");
+        Change change = new Change();
+        Node root = this.root.with(key, value, hash(key), 0, change);
+        return root == this.root ? this : new PersistentHashMap<>(root, change.sizeChanged ? this.size + 1 : this.size);
+    }
+
+    public PersistentHashMap<K, V> without(Object key) {
+        Change change = new Change();
+        Node root = this.root.without(key, hash(key), 0, change);
+        if (!change.sizeChanged) {
+            return this;
+        }
+        return root != null ? new PersistentHashMap<>(root, this.size - 1) : empty();
+    }
+
+    /**
+     * Gets a read only view of this map.
+     *
+     * @return The view
+     */
+    public Map<K, V> asMap() {
+        return new AbstractMap<K, V>() {
+
+            @Override
+            public V get(Object key) {
+                return key != null ? PersistentHashMap.this.get(key) : null;
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return key != null && PersistentHashMap.this.containsKey(key);
+            }
+
+            @Override
+            public int size() {
+                return PersistentHashMap.this.size;
+            }
+
+            @Override
+            public Set<Map.Entry<K, V>> entrySet() {
+                return new AbstractSet<Map.Entry<K, V>>() {
+
+                    @Override
+                    public Iterator<Map.Entry<K, V>> iterator() {
+                        return new EntryIterator<>(PersistentHashMap.this.root);
+                    }
+
+                    @Override
+                    public int size() {
+                        return PersistentHashMap.this.size;
+                    }
+                };
+            }
+        };
+    }
+
+    private static int hash(Object key) {
+        int hash = key.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    private static class Change {
+
+        private boolean sizeChanged;
+    }
+
+    /**
+     * A node holds its entries and children in one array of pairs. A pair is
+     * either a key and its value, or null and a child node.
+     */
+    private abstract static class Node {
+
+        final Object[] array;
+
+        Node(Object[] array) {
+            this.array = array;
+        }
+
+        @Nullable
+        abstract Object get(Object key, int hash, int shift);
+
+        abstract Node with(Object key, Object value, int hash, int shift, Change change);
+
+        @Nullable
+        abstract Node without(Object key, int hash, int shift, Change change);
+    }
+
+    private static class BitmapNode extends Node {
+
+        private static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        private final int bitmap;
+
+        private BitmapNode(int bitmap, Object[] array) {
+            super(array);
+            this.bitmap = bitmap;
+        }
+
+        @Override
+        Object get(Object key, int hash, int shift) {
+            int bit = 1 << ((hash >>> shift) & 31);
+            if ((this.bitmap & bit) == 0) {
+                return null;
+            }
+            int index = 2 * Integer.bitCount(this.bitmap & (bit - 1));
+            Object storedKey = this.array[index];
+            if (storedKey == null) {
+                return ((Node) this.array[index + 1]).get(key, hash, shift + 5);
+            }
+            return key.equals(storedKey) ? this.array[index + 1] : null;
+        }
+
+        @Override
+        Node with(Object key, Object value, int hash, int shift, Change change) {
+            int bit = 1 << ((hash >>> shift) & 31);
+            int index = 2 * Integer.bitCount(this.bitmap & (bit - 1));
+            if ((this.bitmap & bit) == 0) {
+                change.sizeChanged = true;
+                Object[] array = new Object[this.array.length + 2];
+                System.arraycopy(this.array, 0, array, 0, index);
+                array[index] = key;
+                array[index + 1] = value;
+                System.arraycopy(this.array, index, array, index + 2, this.array.length - index);
+                return new BitmapNode(this.bitmap | bit, array);
+            }
+            Object storedKey = this.array[index];
+            Object storedValue = this.array[index + 1];
+            if (storedKey == null) {
+                Node child = ((Node) storedValue).with(key, value, hash, shift + 5, change);
+                return child == storedValue ? this : this.replace(index, null, child);
+            }
+            if (key.equals(storedKey)) {
+                return storedValue == value ? this : this.replace(index, storedKey, value);
+            }
+            change.sizeChanged = true;
+            return this.replace(index, null, createNode(storedKey, storedValue, key, value, hash, shift + 5));
+        }
+
+        @Override
+        Node without(Object key, int hash, int shift, Change change) {
+            int bit = 1 << ((hash >>> shift) & 31);
+            if ((this.bitmap & bit) == 0) {
+                return this;
+            }
+            int index = 2 * Integer.bitCount(this.bitmap & (bit - 1));
+            Object storedKey = this.array[index];
+            if (storedKey == null) {
+                Node child = (Node) this.array[index + 1];
+                Node newChild = child.without(key, hash, shift + 5, change);
+                if (newChild == child) {
+                    return this;
+                }
+                if (newChild != null) {
+                    return this.replace(index, null, newChild);
+                }
+            } else if (!key.equals(storedKey)) {
+                return this;
+            } else {
+                change.sizeChanged = true;
+            }
+            if (this.bitmap == bit) {
+                return null;
+            }
+            Object[] array = new Object[this.array.length - 2];
+            System.arraycopy(this.array, 0, array, 0, index);
+            System.arraycopy(this.array, index + 2, array, index, array.length - index);
+            return new BitmapNode(this.bitmap & ~bit, array);
+        }
+
+        private BitmapNode replace(int index, @Nullable Object key, Object value) {
+            Object[] array = this.array.clone();
+            array[index] = key;
+            array[index + 1] = value;
+            return new BitmapNode(this.bitmap, array);
+        }
+
+        private static Node createNode(Object key1, Object value1, Object key2, Object value2, int hash2, int shift) {
+            int hash1 = hash(key1);
+            if (hash1 == hash2) {
+                return new CollisionNode(hash1, new Object[] {key1, value1, key2, value2});
+            }
+            Change change = new Change();
+            return EMPTY.with(key1, value1, hash1, shift, change).with(key2, value2, hash2, shift, change);
+        }
+    }
+
+    /**
+     * The keys sharing their full hash, compared one by one.
+     */
+    private static class CollisionNode extends Node {
+
+        private final int hash;
+
+        private CollisionNode(int hash, Object[] array) {
+            super(array);
+            this.hash = hash;
+        }
+
+        @Override
+        Object get(Object key, int hash, int shift) {
+            int index = this.indexOf(key);
+            return index >= 0 ? this.array[index + 1] : null;
+        }
+
+        @Override
+        Node with(Object key, Object value, int hash, int shift, Change change) {
+            if (hash != this.hash) {
+                // Split on the next bits of the hashes, which must differ
+                BitmapNode node = new BitmapNode(1 << ((this.hash >>> shift) & 31), new Object[] {null, this});
+                return node.with(key, value, hash, shift, change);
+            }
+            int index = this.indexOf(key);
+            if (index >= 0) {
+                if (this.array[index + 1] == value) {
+                    return this;
+                }
+                Object[] array = this.array.clone();
+                array[index + 1] = value;
+                return new CollisionNode(this.hash, array);
+            }
+            change.sizeChanged = true;
+            Object[] array = new Object[this.array.length + 2];
+            System.arraycopy(this.array, 0, array, 0, this.array.length);
+            array[this.array.length] = key;
+            array[this.array.length + 1] = value;
+            return new CollisionNode(this.hash, array);
+        }
+
+        @Override
+        Node without(Object key, int hash, int shift, Change change) {
+            int index = this.indexOf(key);
+            if (index < 0) {
+                return this;
+            }
+            change.sizeChanged = true;
+            if (this.array.length == 2) {
+                return null;
+            }
+            Object[] array = new Object[this.array.length - 2];
+            System.arraycopy(this.array, 0, array, 0, index);
+            System.arraycopy(this.array, index + 2, array, index, array.length - index);
+            return new CollisionNode(this.hash, array);
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < this.array.length; i += 2) {
+                if (key.equals(this.array[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private static class EntryIterator<K, V> implements Iterator<Map.Entry<K, V>> {
+
+        private final Object[][] arrays = new Object[MAX_DEPTH + 1][];
+        private final int[] positions = new int[MAX_DEPTH + 1];
+        private int depth;
+        @Nullable private Map.Entry<K, V> next;
+
+        private EntryIterator(Node root) {
+            this.arrays[0] = root.array;
+            this.advance();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            while (this.depth >= 0) {
+                Object[] array = this.arrays[this.depth];
+                int position = this.positions[this.depth];
+                if (position >= array.length) {
+                    this.depth--;
+                    continue;
+                }
+                this.positions[this.depth] = position + 2;
+                if (array[position] != null) {
+                    this.next = new AbstractMap.SimpleImmutableEntry<>((K) array[position], (V) array[position + 1]);
+                    return;
+                }
+                this.depth++;
+                this.arrays[this.depth] = ((Node) array[position + 1]).array;
+                this.positions[this.depth] = 0;
+            }
+            this.next = null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.next != null;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (this.next == null) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<K, V> entry = this.next;
+            this.advance();
+            return entry;
+        }
+    }
+}
@@ -0,0 +1,366 @@
+/**
+ * This file is part of XtraCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016 - 2016 XtraStudio <https://github.com/XtraStudio>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.xtra.core.util.scan;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import javax.annotation.Nullable;
+
+import com.xtra.api.plugin.XtraCorePluginContainer;
+import com.xtra.core.internal.Internals;
+
+/**
+ * A binary cache of the scan results of each plugin, stored in
+ * config/xtracore/cache. An entry is keyed by a key describing how the plugin
+ * was scanned, and by the fingerprint of every classpath location that was
+ * scanned, including the plugin jar. As long as none of the locations have
+ * changed, the cached results are used and the plugin is not scanned.
+ */
+public class ScanCache {
+
+    public static final Path CACHE_DIRECTORY = Paths.get(System.getProperty("user.dir"), "config", "xtracore", "cache");
+    private static final int MAGIC = 0x58435343;
+    private static final int FORMAT = 2;
+
+    /**
+     * Takes the fingerprints of the specified classpath locations, which must
+     * happen before they are scanned, so that the results are stored with the
+     * state of the locations they were read from.
+     *
+     * @param container The container
+     * @param locations The scanned locations
+     * @return The fingerprints, or {@link Optional#empty()} if the results of
+     *         the plugin can not be cached
+     */
+    public static Optional<List<Fingerprint>> fingerprint(XtraCorePluginContainer container, Collection<URL> locations) {
+        Optional<Path> jar = getJar(container);
+        // Plugins loaded from a directory, like in a development environment,
+        // are not cached.
+        if (!jar.isPresent()) {
+            return Optional.empty();
+        }
+        List<Path> paths = new ArrayList<>();
+        paths.add(jar.get());
+        for (URL location : locations) {
+            Optional<Path> path = toPath(location);
+            if (!path.isPresent()) {
+                // Locations that are not files can not be checked for changes
+                return Optional.empty();
+            }
+            if (!paths.contains(path.get())) {
+                paths.add(path.get());
+            }
+        }
+        try {
+            List<Fingerprint> fingerprints = new ArrayList<>(paths.size());
+            for (Path path : paths) {
+                fingerprints.add(Fingerprint.of(path));
+            }
+            return Optional.of(fingerprints);
+        } catch (IOException e) {
+            container.getLogger().warn("The scanned classpath locations could not be read, the scan results will not be cached.", e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Reads the cached scan results of the specified plugin, if they are still
+     * valid. The results must have been read from the same locations, and none
+     * of them may have changed. Only the attributes of a jar are read, unless
+     * the modification time changed without the size changing, in which case
+     * the content hash decides and a matching entry is updated with the new
+     * modification time.
+     *
+     * @param container The container
+     * @param key The key describing how the plugin is scanned
+     * @param locations The locations the plugin would be scanned in
+     * @return The cached results, or {@link Optional#empty()} if there are no
+     *         valid results
+     */
+    public static Optional<ScanIndex> read(XtraCorePluginContainer container, String key, Collection<URL> locations) {
+        Optional<Path> jar = getJar(container);
+        Path cacheFile = getCacheFile(container);
+        if (!jar.isPresent() || !Files.exists(cacheFile)) {
+            return Optional.empty();
+        }
+        try {
+            // The cache is small, and a mapped buffer could not be unmapped
+            // before the file is replaced
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(cacheFile));
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT) {
+                return Optional.empty();
+            }
+            if (!readString(buffer).equals(Internals.VERSION) || !readString(buffer).equals(key)) {
+                return Optional.empty();
+            }
+
+            List<Fingerprint> fingerprints = new ArrayList<>();
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                fingerprints.add(new Fingerprint(readString(buffer), buffer.getLong(), buffer.getLong(), buffer.getLong()));
+            }
+            // The locations may have changed, such as when a dependency was
+            // added or removed
+            List<String> expected = new ArrayList<>();
+            expected.add(jar.get().toString());
+            for (URL location : locations) {
+                Optional<Path> path = toPath(location);
+                if (!path.isPresent()) {
+                    return Optional.empty();
+                }
+                if (!expected.contains(path.get().toString())) {
+                    expected.add(path.get().toString());
+                }
+            }
+            if (expected.size() != fingerprints.size()) {
+                return Optional.empty();
+            }
+            boolean touched = false;
+            for (int i = 0; i < fingerprints.size(); i++) {
+                Fingerprint fingerprint = fingerprints.get(i);
+                if (!expected.contains(fingerprint.location)) {
+                    return Optional.empty();
+                }
+                Fingerprint current = fingerprint.check();
+                if (current == null) {
+                    return Optional.empty();
+                }
+                if (current != fingerprint) {
+                    fingerprints.set(i, current);
+                    touched = true;
+                }
+            }
+
+            ScanIndex index = new ScanIndex();
+            readStrings(buffer, index.commands());
+            readStrings(buffer, index.configs());
+            readStrings(buffer, index.listeners());
+            container.getLogger().info("Using the cached scan results from " + cacheFile);
+            if (touched) {
+                // Only modification times changed, so the entry is written
+                // again to avoid hashing the jars on every startup
+                write(container, key, fingerprints, index);
+            }
+            return Optional.of(index);
+        } catch (Exception e) {
+            container.getLogger().warn("The scan cache " + cacheFile + " could not be read, the plugin will be scanned.", e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Writes the scan results of the specified plugin to the cache, together
+     * with the fingerprints taken before the scan.
+     *
+     * @param container The container
+     * @param key The key describing how the plugin was scanned
+     * @param fingerprints The fingerprints of the scanned locations, from
+     *        {@link #fingerprint(XtraCorePluginContainer, Collection)}
+     * @param index The scan results
+     */
+    public static void write(XtraCorePluginContainer container, String key, List<Fingerprint> fingerprints, ScanIndex index) {
+        Path cacheFile = getCacheFile(container);
+        try {
+            Files.createDirectories(CACHE_DIRECTORY);
+            // Write to a temporary file first, so that a crash can never leave
+            // a half written cache behind.
+            Path tempFile = Files.createTempFile(CACHE_DIRECTORY, container.getPluginContainer().getId(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT);
+                writeString(out, Internals.VERSION);
+                writeString(out, key);
+                out.writeInt(fingerprints.size());
+                for (Fingerprint fingerprint : fingerprints) {
+                    writeString(out, fingerprint.location);
+                    out.writeLong(fingerprint.size);
+                    out.writeLong(fingerprint.modified);
+                    out.writeLong(fingerprint.hash);
+                }
+                writeStrings(out, index.commands());
+                writeStrings(out, index.configs());
+                writeStrings(out, index.listeners());
+            }
+            Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            container.getLogger().warn("The scan results could not be written to " + cacheFile + ".", e);
+        }
+    }
+
+    private static Optional<Path> getJar(XtraCorePluginContainer container) {
+        CodeSource source = container.getPlugin().getClass().getProtectionDomain().getCodeSource();
+        if (source == null || source.getLocation() == null) {
+            return Optional.empty();
+        }
+        Optional<Path> path = toPath(source.getLocation());
+        return path.isPresent() && Files.isRegularFile(path.get()) ? path : Optional.empty();
+    }
+
+    private static Optional<Path> toPath(URL location) {
+        try {
+            return Optional.of(Paths.get(location.toURI()));
+        } catch (URISyntaxException | IllegalArgumentException | FileSystemNotFoundException e) {
+            // The location is not a file, so there is nothing to cache
+            return Optional.empty();
+        }
+    }
+
+    private static Path getCacheFile(XtraCorePluginContainer container) {
+        return CACHE_DIRECTORY.resolve(container.getPluginContainer().getId() + ".bin");
+    }
+
+    private static long hash(Path jar) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] bytes = new byte[8192];
+        try (InputStream in = Files.newInputStream(jar)) {
+            int read;
+            while ((read = in.read(bytes)) != -1) {
+                crc.update(bytes, 0, read);
+            }
+        }
+        return crc.getValue();
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void readStrings(ByteBuffer buffer, Set<String> target) {
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            target.add(readString(buffer));
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeStrings(DataOutputStream out, Set<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (String string : strings) {
+            writeString(out, string);
+        }
+    }
+
+    /**
+     * The state of a scanned classpath location. A jar is described by its
+     * size, modification time and content hash. A directory is described by
+     * the total size, latest modification time and a hash of the names, sizes
+     * and modification times of all files within it.
+     */
+    public static class Fingerprint {
+
+        private final String location;
+        private final long size;
+        private final long modified;
+        private final long hash;
+
+        private Fingerprint(String location, long size, long modified, long hash) {
+            this.location = location;
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+        }
+
+        private static Fingerprint of(Path path) throws IOException {
+            if (Files.isDirectory(path)) {
+                return ofDirectory(path);
+            }
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return new Fingerprint(path.toString(), attributes.size(), attributes.lastModifiedTime().toMillis(), hash(path));
+        }
+
+        private static Fingerprint ofDirectory(Path directory) throws IOException {
+            CRC32 crc = new CRC32();
+            long size = 0;
+            long modified = 0;
+            try (Stream<Path> files = Files.walk(directory)) {
+                // Sorted, so the hash does not depend on the order of the walk
+                for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile).sorted()::iterator) {
+                    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    size += attributes.size();
+                    modified = Math.max(modified, attributes.lastModifiedTime().toMillis());
+                    crc.update((directory.relativize(file) + ":" + attributes.size() + ":" + attributes.lastModifiedTime().toMillis() + "\n")
+                            .getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            return new Fingerprint(directory.toString(), size, modified, crc.getValue());
+        }
+
+        /**
+         * Checks whether the location is unchanged.
+         *
+         * @return This fingerprint if unchanged, a new fingerprint if only the
+         *         modification time of the jar changed, or null if changed
+         * @throws IOException If the location could not be read
+         */
+        @Nullable
+        private Fingerprint check() throws IOException {
+            Path path = Paths.get(this.location);
+            if (Files.isDirectory(path)) {
+                Fingerprint current = ofDirectory(path);
+                return current.size == this.size && current.hash == this.hash ? this : null;
+            }
+            if (!Files.isRegularFile(path)) {
+                return null;
+            }
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            if (attributes.size() != this.size) {
+                return null;
+            }
+            if (attributes.lastModifiedTime().toMillis() == this.modified) {
+                return this;
+            }
+            return hash(path) == this.hash ? new Fingerprint(this.location, this.size, attributes.lastModifiedTime().toMillis(), this.hash) : null;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * This file is part of XtraCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016 - 2016 XtraStudio <https://github.com/XtraStudio>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.xtra.core.util.scan;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The scan results of a single plugin, stored as binary class names. An index
+ * is either generated at compile time by the {@link ScanIndexProcessor} and
+ * read back from the plugin jar, or built from a runtime scan.
+ */
+public class ScanIndex {
+
+    /**
+     * The directory inside of a jar that holds the generated indexes. Each
+     * index is named after the binary name of its plugin class.
+     */
+    public static final String INDEX_DIRECTORY = "META-INF/xtracore/index/";
+
+    private static final String COMMAND = "command";
+    private static final String CONFIG = "config";
+    private static final String LISTENER = "listener";
+
+    private Set<String> commands = new TreeSet<>();
+    private Set<String> configs = new TreeSet<>();
+    private Set<String> listeners = new TreeSet<>();
+
+    /**
+     * Attempts to find the generated index for the specified plugin class.
+     *
+     * @param pluginClass The plugin class
+     * @return The index, or {@link Optional#empty()} if the plugin was not
+     *         compiled with the index processor
+     * @throws IOException If the index exists but could not be read
+     */
+    public static Optional<ScanIndex> find(Class<?> pluginClass) throws IOException {
+        ClassLoader loader = pluginClass.getClassLoader();
+        if (loader == null) {
+            return Optional.empty();
+        }
+        try (InputStream in = loader.getResourceAsStream(INDEX_DIRECTORY + pluginClass.getName())) {
+            if (in == null) {
+                return Optional.empty();
+            }
+            return Optional.of(read(in));
+        }
+    }
+
+    public static ScanIndex read(InputStream in) throws IOException {
+        ScanIndex index = new ScanIndex();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            // Skip empty lines and comments
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int split = line.indexOf(' ');
+            if (split == -1) {
+                throw new IOException("Malformed index line: '" + line + "'");
+            }
+            String type = line.substring(0, split);
+            String className = line.substring(split + 1).trim();
+            if (type.equals(COMMAND)) {
+                index.commands.add(className);
+            } else if (type.equals(CONFIG)) {
+                index.configs.add(className);
+            } else if (type.equals(LISTENER)) {
+                index.listeners.add(className);
+            } else {
+                throw new IOException("Unknown index entry type: '" + type + "'");
+            }
+        }
+        return index;
+    }
+
+    public void write(Writer writer) throws IOException {
+        writer.write("# Generated by XtraCore. Do not edit.\n");
+        for (String command : this.commands) {
+            writer.write(COMMAND + " " + command + "\n");
+        }
+        for (String config : this.configs) {
+            writer.write(CONFIG + " " + config + "\n");
+        }
+        for (String listener : this.listeners) {
+            writer.write(LISTENER + " " + listener + "\n");
+        }
+    }
+
+    /**
+     * Gets the binary names of the classes annotated with RegisterCommand.
+     *
+     * @return The command class names
+     */
+    public Set<String> commands() {
+        return this.commands;
+    }
+
+    /**
+     * Gets the binary names of the classes annotated with RegisterConfig.
+     *
+     * @return The config class names
+     */
+    public Set<String> configs() {
+        return this.configs;
+    }
+
+    /**
+     * Gets the binary names of the classes that declare at least one Listener
+     * method, excluding the plugin classes themselves.
+     *
+     * @return The listener class names
+     */
+    public Set<String> listeners() {
+        return this.listeners;
+    }
+}
@@ -0,0 +1,273 @@
+/**
+ * This file is part of XtraCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016 - 2016 XtraStudio <https://github.com/XtraStudio>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.xtra.core.util.scan;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.Nullable;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+import com.xtra.api.command.annotation.RegisterCommand;
+import com.xtra.api.config.annotation.RegisterConfig;
+import com.xtra.api.plugin.XtraCorePlugin;
+
+/**
+ * An annotation processor that writes a {@link ScanIndex} for every XtraCore
+ * plugin being compiled, so that XtraCore does not have to scan the plugin at
+ * runtime. The processor is registered as a service, so it only needs XtraCore
+ * on the compile classpath of the plugin.
+ *
+ * <p>The XtraAPI annotations are referenced through their classes, so that
+ * their names follow the relocation of XtraAPI in the XtraCore jar. The Sponge
+ * annotations are referenced by name, as Sponge is not on the classpath of the
+ * processor.</p>
+ *
+ * <p>Incremental compilers only pass the changed classes to the processor, so
+ * the index written by the previous compilation is merged with the classes of
+ * this one. Entries whose classes no longer exist, or no longer carry their
+ * annotation, are dropped.</p>
+ */
+public class ScanIndexProcessor extends AbstractProcessor {
+
+    static final String XTRACORE_PLUGIN = XtraCorePlugin.class.getCanonicalName();
+    static final String REGISTER_COMMAND = RegisterCommand.class.getCanonicalName();
+    static final String REGISTER_CONFIG = RegisterConfig.class.getCanonicalName();
+    static final String LISTENER = "org.spongepowered.api.event.Listener";
+    static final String PLUGIN = "org.spongepowered.api.plugin.Plugin";
+    /**
+     * The resource listing every plugin class indexed in the output, so that
+     * the indexes are kept up to date when the plugin class itself was not
+     * compiled again.
+     */
+    static final String PLUGINS = "META-INF/xtracore/plugins";
+
+    private Set<String> plugins = new TreeSet<>();
+    private Set<String> commands = new TreeSet<>();
+    private Set<String> configs = new TreeSet<>();
+    private Set<String> listeners = new TreeSet<>();
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return new HashSet<>(Arrays.asList(XTRACORE_PLUGIN, REGISTER_COMMAND, REGISTER_CONFIG, LISTENER));
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            String name = annotation.getQualifiedName().toString();
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (name.equals(LISTENER)) {
+                    if (element.getKind() != ElementKind.METHOD) {
+                        continue;
+                    }
+                    TypeElement declaringType = (TypeElement) element.getEnclosingElement();
+                    // Listeners in the plugin class are registered by Sponge
+                    // itself, so we ignore them.
+                    if (!this.hasAnnotation(declaringType, PLUGIN)) {
+                        this.listeners.add(this.binaryName(declaringType));
+                    }
+                } else if (element instanceof TypeElement) {
+                    String className = this.binaryName((TypeElement) element);
+                    if (name.equals(XTRACORE_PLUGIN)) {
+                        this.plugins.add(className);
+                    } else if (name.equals(REGISTER_COMMAND)) {
+                        this.commands.add(className);
+                    } else if (name.equals(REGISTER_CONFIG)) {
+                        this.configs.add(className);
+                    }
+                }
+            }
+        }
+
+        if (roundEnv.processingOver()) {
+            this.writeIndexes();
+        }
+        // Do not claim the annotations, other processors may want them
+        return false;
+    }
+
+    private void writeIndexes() {
+        Optional<Set<String>> previousPlugins = this.readPlugins();
+        if (previousPlugins.isPresent()) {
+            for (String plugin : previousPlugins.get()) {
+                if (this.isAnnotated(plugin, XTRACORE_PLUGIN)) {
+                    this.plugins.add(plugin);
+                }
+            }
+        }
+        if (this.plugins.isEmpty()) {
+            return;
+        }
+
+        for (String plugin : this.plugins) {
+            // Mirror the runtime scan, which only looks at the package of the
+            // plugin class and its subpackages.
+            int lastDot = plugin.lastIndexOf('.');
+            String prefix = lastDot == -1 ? "" : plugin.substring(0, lastDot + 1);
+
+            ScanIndex index = new ScanIndex();
+            Optional<ScanIndex> previous = this.readIndex(plugin);
+            if (previous.isPresent()) {
+                for (String command : previous.get().commands()) {
+                    if (this.isAnnotated(command, REGISTER_COMMAND)) {
+                        index.commands().add(command);
+                    }
+                }
+                for (String config : previous.get().configs()) {
+                    if (this.isAnnotated(config, REGISTER_CONFIG)) {
+                        index.configs().add(config);
+                    }
+                }
+                for (String listener : previous.get().listeners()) {
+                    if (this.isListener(listener)) {
+                        index.listeners().add(listener);
+                    }
+                }
+            }
+            this.filter(this.commands, prefix, index.commands());
+            this.filter(this.configs, prefix, index.configs());
+            this.filter(this.listeners, prefix, index.listeners());
+
+            try {
+                FileObject file = this.processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", ScanIndex.INDEX_DIRECTORY + plugin);
+                try (Writer writer = file.openWriter()) {
+                    index.write(writer);
+                }
+            } catch (IOException e) {
+                this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "Could not write the XtraCore scan index for " + plugin + ": " + e.getMessage());
+            }
+        }
+
+        try {
+            FileObject file = this.processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", PLUGINS);
+            try (Writer writer = file.openWriter()) {
+                for (String plugin : this.plugins) {
+                    writer.write(plugin + "\n");
+                }
+            }
+        } catch (IOException e) {
+            this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Could not write the list of XtraCore plugins: " + e.getMessage());
+        }
+    }
+
+    private Optional<Set<String>> readPlugins() {
+        try (InputStream in = this.processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", PLUGINS).openInputStream()) {
+            Set<String> plugins = new TreeSet<>();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty()) {
+                    plugins.add(line.trim());
+                }
+            }
+            return Optional.of(plugins);
+        } catch (IOException | IllegalArgumentException e) {
+            // Nothing was compiled into the output before
+            return Optional.empty();
+        }
+    }
+
+    private Optional<ScanIndex> readIndex(String plugin) {
+        try (InputStream in = this.processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", ScanIndex.INDEX_DIRECTORY + plugin)
+                .openInputStream()) {
+            return Optional.of(ScanIndex.read(in));
+        } catch (IOException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    private boolean isAnnotated(String className, String annotation) {
+        TypeElement type = this.getType(className);
+        return type != null && this.hasAnnotation(type, annotation);
+    }
+
+    private boolean isListener(String className) {
+        TypeElement type = this.getType(className);
+        if (type == null || this.hasAnnotation(type, PLUGIN)) {
+            return false;
+        }
+        for (Element element : type.getEnclosedElements()) {
+            if (element.getKind() == ElementKind.METHOD && this.hasAnnotation(element, LISTENER)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Nullable
+    private TypeElement getType(String className) {
+        // The index holds binary names, which separate nested classes with a
+        // dollar sign
+        return this.processingEnv.getElementUtils().getTypeElement(className.replace('$', '.'));
+    }
+
+    private void filter(Set<String> classNames, String prefix, Set<String> target) {
+        for (String className : classNames) {
+            if (className.startsWith(prefix)) {
+                target.add(className);
+            }
+        }
+    }
+
+    private boolean hasAnnotation(Element element, String annotation) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotation)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String binaryName(TypeElement type) {
+        return this.processingEnv.getElementUtils().getBinaryName(type).toString();
+    }
+}
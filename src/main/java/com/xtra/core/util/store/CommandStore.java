@@ -31,6 +31,7 @@ import org.spongepowered.api.command.spec.CommandSpec;
 
 import com.xtra.api.command.Command;
 import com.xtra.api.command.state.CommandState;
+import com.xtra.core.command.stats.CommandStats;
 
 /**
  * Ties together a command and its appropriate command spec builder.
@@ -40,9 +41,11 @@ public class CommandStore implements Comparable<CommandStore> {
     private Command command;
     private CommandSpec.Builder commandSpecBuilder;
     private Command childOf;
-    private CommandState state = CommandState.ENABLED;
+    // Read on every execution, possibly from async threads
+    private volatile CommandState state = CommandState.ENABLED;
+    private CommandStats stats = new CommandStats();
 
-    public CommandStore(Command commandBase, CommandSpec.Builder commandSpecBuilder, @Nullable Command childOf) {
+    public CommandStore(Command commandBase, @Nullable CommandSpec.Builder commandSpecBuilder, @Nullable Command childOf) {
         this.command = commandBase;
         this.commandSpecBuilder = commandSpecBuilder;
         this.childOf = childOf;
@@ -56,6 +59,10 @@ public class CommandStore implements Comparable<CommandStore> {
         return this.commandSpecBuilder;
     }
 
+    public void setCommandSpecBuilder(CommandSpec.Builder commandSpecBuilder) {
+        this.commandSpecBuilder = commandSpecBuilder;
+    }
+
     public Command childOf() {
         return this.childOf;
     }
@@ -68,6 +75,10 @@ public class CommandStore implements Comparable<CommandStore> {
         this.state = state;
     }
 
+    public CommandStats stats() {
+        return this.stats;
+    }
+
     @Override
     public int compareTo(CommandStore other) {
         return this.command.aliases()[0].compareTo(other.command.aliases()[0]);
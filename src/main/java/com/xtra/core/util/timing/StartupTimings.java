@@ -0,0 +1,118 @@
+/**
+ * This file is part of XtraCore, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016 - 2016 XtraStudio <https://github.com/XtraStudio>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.xtra.core.util.timing;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.xtra.api.plugin.XtraCorePluginContainer;
+
+/**
+ * Records how long each phase of the startup took for each plugin, in
+ * nanoseconds. Phases that are recorded more than once for the same plugin are
+ * added together.
+ */
+public class StartupTimings {
+
+    private Map<String, Map<String, Long>> timings = new LinkedHashMap<>();
+
+    /**
+     * Starts timing the specified phase. The returned timing should be closed
+     * once the phase has finished, preferably with a try-with-resources
+     * statement.
+     *
+     * @param container The container the phase belongs to
+     * @param phase The name of the phase
+     * @return The running timing
+     */
+    public Timing start(XtraCorePluginContainer container, String phase) {
+        return new Timing(container.getPluginContainer().getId(), phase, System.nanoTime());
+    }
+
+    public synchronized void record(String pluginId, String phase, long nanos) {
+        Map<String, Long> phases = this.timings.get(pluginId);
+        if (phases == null) {
+            phases = new LinkedHashMap<>();
+            this.timings.put(pluginId, phases);
+        }
+        Long previous = phases.get(phase);
+        phases.put(phase, previous == null ? nanos : previous + nanos);
+    }
+
+    /**
+     * Gets a copy of the recorded timings, by plugin id and then by phase, in
+     * the order they were first recorded.
+     *
+     * @return The timings
+     */
+    public synchronized Map<String, Map<String, Long>> getTimings() {
+        Map<String, Map<String, Long>> copy = new LinkedHashMap<>();
+        for (Map.Entry<String, Map<String, Long>> entry : this.timings.entrySet()) {
+            copy.put(entry.getKey(), new LinkedHashMap<>(entry.getValue()));
+        }
+        return copy;
+    }
+
+    /**
+     * Writes the timings to the specified file, as comma separated values.
+     *
+     * @param path The file to write to
+     * @throws IOException If the file could not be written
+     */
+    public void write(Path path) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write("plugin,phase,nanos\n");
+            for (Map.Entry<String, Map<String, Long>> plugin : this.getTimings().entrySet()) {
+                for (Map.Entry<String, Long> phase : plugin.getValue().entrySet()) {
+                    writer.write(plugin.getKey() + ",\"" + phase.getKey().replace("\"", "\"\"") + "\"," + phase.getValue() + "\n");
+                }
+            }
+        }
+    }
+
+    public class Timing implements AutoCloseable {
+
+        private String pluginId;
+        private String phase;
+        private long start;
+
+        private Timing(String pluginId, String phase, long start) {
+            this.pluginId = pluginId;
+            this.phase = phase;
+            this.start = start;
+        }
+
+        @Override
+        public void close() {
+            record(this.pluginId, this.phase, System.nanoTime() - this.start);
+        }
+    }
+}